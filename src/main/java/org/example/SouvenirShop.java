@@ -1,6 +1,7 @@
 package org.example;
 
 import org.example.database.DatabaseHandler;
+import org.example.database.ProductQuery;
 import org.example.entity.Manufacturer;
 import org.example.entity.Product;
 
@@ -8,9 +9,16 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.stream.Stream;
 
 public class SouvenirShop {
 
+    // Rows printed per page of list command with '--page' suffix
+    private static final int PAGE_SIZE = 20;
+
+    // Whether current list command prints page at a time
+    private boolean paged;
+
     public void start() {
 
         try (Scanner scanner = new Scanner(System.in)) {
@@ -19,6 +27,11 @@ public class SouvenirShop {
                     = new DatabaseHandler("manufacturers.json", "products.json");
 
             System.out.println("\nDatabase Program");
+            List<String> invalidRows = handler.readInvalidRows();
+            for (String row : invalidRows)
+                System.out.println("Skipped invalid row: " + row);
+            if (!invalidRows.isEmpty())
+                System.out.println("Tables can't be changed until these rows are fixed or removed with 'drop invalid'.");
 
             boolean continueProgram = true;
             while (continueProgram) {
@@ -30,58 +43,15 @@ public class SouvenirShop {
                 System.out.print(" Input: ");
 
                 String command = scanner.nextLine();
-                switch (command.toLowerCase()) {
-                    case "exit" -> {
-                        continueProgram = false;
-                    }
-                    case "commands" -> {
-                        commands();
-                    }
-                    case "list mf" -> {
-                        listManufacturers(handler);
-                    }
-                    case "create mf" -> {
-                        createManufacturer(scanner, handler);
-                    }
-                    case "update mf" -> {
-                        updateManufacturer(scanner, handler);
-                    }
-                    case "delete mf" -> {
-                        deleteManufacturer(scanner, handler);
-                    }
-                    case "list pd" -> {
-                        listProducts(handler);
-                    }
-                    case "create pd" -> {
-                        createProduct(scanner, handler);
-                    }
-                    case "update pd" -> {
-                        updateProduct(scanner, handler);
-                    }
-                    case "delete pd" -> {
-                        deleteProduct(scanner, handler);
-                    }
-                    case "list mf pd" -> {
-                        listManufacturerProducts(scanner, handler);
-                    }
-                    case "list country pd" -> {
-                        listProductsByCountry(scanner, handler);
-                    }
-                    case "list mf price" -> {
-                        listManufacturersWherePriceLessThan(scanner, handler);
-                    }
-                    case "list all" -> {
-                        listAll(handler);
-                    }
-                    case "list mf pd_name year" -> {
-                        listAllManufacturersByProductNameAndYear(scanner, handler);
-                    }
-                    case "list year pd" -> {
-                        listProductsByYear(scanner, handler);
-                    }
-                    case "delete mf and pd" -> {
-                        deleteManufacturerAndAllProducts(scanner, handler);
-                    }
+                // Failed command, such as write refused by table, doesn't end program
+                try {
+                    // Prefix 'explain' prints how list command was executed
+                    if (command.toLowerCase().startsWith("explain "))
+                        explain(command.substring("explain ".length()), scanner, handler);
+                    else
+                        continueProgram = execute(command, scanner, handler);
+                } catch (RuntimeException e) {
+                    System.out.println("Command failed: " + e.getMessage());
                 }
             }
 
@@ -91,6 +61,80 @@ public class SouvenirShop {
 
     }
 
+    // Returns false if program should exit
+    private boolean execute(String command, Scanner scanner, DatabaseHandler handler) {
+        command = command.toLowerCase();
+        paged = command.endsWith(" --page");
+        if (paged)
+            command = command.substring(0, command.length() - " --page".length());
+        switch (command) {
+            case "exit" -> {
+                return false;
+            }
+            case "commands" -> {
+                commands();
+            }
+            case "list mf" -> {
+                listManufacturers(scanner, handler);
+            }
+            case "create mf" -> {
+                createManufacturer(scanner, handler);
+            }
+            case "update mf" -> {
+                updateManufacturer(scanner, handler);
+            }
+            case "delete mf" -> {
+                deleteManufacturer(scanner, handler);
+            }
+            case "list pd" -> {
+                listProducts(scanner, handler);
+            }
+            case "create pd" -> {
+                createProduct(scanner, handler);
+            }
+            case "update pd" -> {
+                updateProduct(scanner, handler);
+            }
+            case "delete pd" -> {
+                deleteProduct(scanner, handler);
+            }
+            case "list mf pd" -> {
+                listManufacturerProducts(scanner, handler);
+            }
+            case "list country pd" -> {
+                listProductsByCountry(scanner, handler);
+            }
+            case "list mf price" -> {
+                listManufacturersWherePriceLessThan(scanner, handler);
+            }
+            case "list all" -> {
+                listAll(scanner, handler);
+            }
+            case "list mf pd_name year" -> {
+                listAllManufacturersByProductNameAndYear(scanner, handler);
+            }
+            case "list year pd" -> {
+                listProductsByYear(scanner, handler);
+            }
+            case "delete mf and pd" -> {
+                deleteManufacturerAndAllProducts(scanner, handler);
+            }
+            case "drop invalid" -> {
+                for (String row : handler.dropInvalidRows())
+                    System.out.println("Dropped invalid row: " + row);
+            }
+        }
+        return true;
+    }
+
+    private void explain(String command, Scanner scanner, DatabaseHandler handler) {
+        if (!command.toLowerCase().startsWith("list ")) {
+            System.out.println("Only list commands can be explained.");
+            return;
+        }
+        System.out.println(handler.explain(() -> execute(command, scanner, handler)));
+    }
+
     private void commands() {
         System.out.print("""
                 
@@ -115,7 +159,29 @@ public class SouvenirShop {
                 - 'list year pd' to list all products by year;
                 - 'delete mf and pd' to delete manufacturer and all
                   all related products;
-                """);
+                - 'drop invalid' to remove rows which couldn't be
+                  loaded, so tables can be changed again;
+                - 'explain' followed by any list command to show
+                  how it was executed;
+                - any list command followed by '--page' to print
+                  %d rows at a time;
+                """.formatted(PAGE_SIZE));
+    }
+
+    // Prints rows, pausing after each page if current command is paged.
+    // Stream is consumed lazily, so rows after stop are never read.
+    private void print(Stream<?> rows, Scanner scanner) {
+        Iterator<?> iterator = rows.iterator();
+        int printed = 0;
+        while (iterator.hasNext()) {
+            if (paged && printed > 0 && printed % PAGE_SIZE == 0) {
+                System.out.print(" -- Enter for next page, 'q' to stop: ");
+                if (scanner.nextLine().trim().equalsIgnoreCase("q"))
+                    return;
+            }
+            System.out.println(iterator.next());
+            printed++;
+        }
     }
 
     private void deleteManufacturerAndAllProducts(Scanner scanner, DatabaseHandler handler) {
@@ -154,7 +220,10 @@ public class SouvenirShop {
             return;
         }
 
-        handler.readAllProductsByYear(Integer.toString(year)).forEach(System.out::println);
+        if (paged)
+            print(handler.streamProducts(new ProductQuery.Builder().setYear(year).build(), PAGE_SIZE), scanner);
+        else
+            print(handler.readAllProductsByYear(Integer.toString(year)).stream(), scanner);
     }
 
     private void listAllManufacturersByProductNameAndYear(Scanner scanner, DatabaseHandler handler) {
@@ -178,12 +247,19 @@ public class SouvenirShop {
             return;
         }
 
-        handler.readAllManufacturersByProductNameAndYear(name, Integer.toString(year))
-                .forEach(System.out::println);
+        print(handler.readAllManufacturersByProductNameAndYear(name, Integer.toString(year)).stream(), scanner);
 
     }
 
-    private void listAll(DatabaseHandler handler) {
+    private void listAll(Scanner scanner, DatabaseHandler handler) {
+        if (paged) {
+            // Products of each manufacturer are read only when its page is reached
+            print(handler.streamManufacturers(PAGE_SIZE).flatMap(manufacturer -> Stream.concat(
+                    Stream.of(manufacturer),
+                    handler.readAllManufacturerProducts(manufacturer).stream().map(product -> "\t" + product))),
+                    scanner);
+            return;
+        }
         Map<Manufacturer, List<Product>> map = handler.readAllManufacturerProductsMap();
         for (Map.Entry<Manufacturer, List<Product>> set : map.entrySet()) {
             System.out.println(set.getKey());
@@ -203,14 +279,17 @@ public class SouvenirShop {
             return;
         }
 
-        handler.readAllManufacturersWherePriceLessThan(price).forEach(System.out::println);
+        print(handler.readAllManufacturersWherePriceLessThan(price).stream(), scanner);
     }
 
     private void listProductsByCountry(Scanner scanner, DatabaseHandler handler) {
         System.out.println("\nEnter country:");
         System.out.print(" Input: ");
         String country = scanner.nextLine();
-        handler.readAllProductsByCountry(country).forEach(System.out::println);
+        if (paged)
+            print(handler.streamProducts(new ProductQuery.Builder().setCountry(country).build(), PAGE_SIZE), scanner);
+        else
+            print(handler.readAllProductsByCountry(country).stream(), scanner);
     }
 
     private void listManufacturerProducts(Scanner scanner, DatabaseHandler handler) {
@@ -228,7 +307,10 @@ public class SouvenirShop {
             System.out.println("Manufacturer not found.");
             return;
         }
-        handler.readAllManufacturerProducts(manufacturer).forEach(System.out::println);
+        if (paged)
+            print(handler.streamProducts(new ProductQuery.Builder().setManufacturerId(id).build(), PAGE_SIZE), scanner);
+        else
+            print(handler.readAllManufacturerProducts(manufacturer).stream(), scanner);
     }
 
     private void deleteProduct(Scanner scanner, DatabaseHandler handler) {
@@ -361,8 +443,8 @@ public class SouvenirShop {
         handler.create(product);
     }
 
-    private void listProducts(DatabaseHandler handler) {
-        handler.readAllProducts().forEach(System.out::println);
+    private void listProducts(Scanner scanner, DatabaseHandler handler) {
+        print(paged ? handler.streamProducts(PAGE_SIZE) : handler.readAllProducts().stream(), scanner);
     }
 
     private void deleteManufacturer(Scanner scanner, DatabaseHandler handler) {
@@ -424,8 +506,8 @@ public class SouvenirShop {
         handler.create(manufacturer);
     }
 
-    private void listManufacturers(DatabaseHandler handler) {
-        handler.readAllManufacturers().forEach(System.out::println);
+    private void listManufacturers(Scanner scanner, DatabaseHandler handler) {
+        print(paged ? handler.streamManufacturers(PAGE_SIZE) : handler.readAllManufacturers().stream(), scanner);
     }
 
 }
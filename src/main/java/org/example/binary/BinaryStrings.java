@@ -0,0 +1,44 @@
+package org.example.binary;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Strings as int length followed by UTF-8 bytes, null has length -1,
+// or as int code of a dictionary written separately
+public final class BinaryStrings {
+
+    private BinaryStrings() {}
+
+    public static void write(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // Writes code when dictionary is given, the string itself otherwise
+    public static void write(DataOutput out, String value, StringDictionary dictionary) throws IOException {
+        if (dictionary == null)
+            write(out, value);
+        else
+            out.writeInt(dictionary.encode(value));
+    }
+
+    public static String read(ByteBuffer buffer, StringDictionary dictionary) {
+        return dictionary == null ? read(buffer) : dictionary.decode(buffer.getInt());
+    }
+
+    public static String read(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
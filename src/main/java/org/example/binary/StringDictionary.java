@@ -0,0 +1,77 @@
+package org.example.binary;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Assigns stable int codes to strings, each distinct string is stored once
+public class StringDictionary {
+
+    public static final int NULL = -1;
+    public static final int ABSENT = -2;
+
+    private static final int MIN_CAPACITY = 16;
+
+    // Null for frozen dictionary, which only decodes
+    private final Map<String, Integer> codes;
+    // Strings by code, only appended to, so frozen dictionaries can share array
+    private String[] strings;
+    private int size;
+
+    public StringDictionary() {
+        this(new HashMap<>(), new String[MIN_CAPACITY], 0);
+    }
+
+    private StringDictionary(Map<String, Integer> codes, String[] strings, int size) {
+        this.codes = codes;
+        this.strings = strings;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Code of value, added if not present yet
+    public int encode(String value) {
+        if (value == null)
+            return NULL;
+        Integer code = codes().get(value);
+        if (code != null)
+            return code;
+        if (size == strings.length)
+            strings = Arrays.copyOf(strings, size * 2);
+        strings[size] = value;
+        codes.put(value, size);
+        return size++;
+    }
+
+    // Code of value or ABSENT, never adds
+    public int code(String value) {
+        if (value == null)
+            return NULL;
+        Integer code = codes().get(value);
+        return code == null ? ABSENT : code;
+    }
+
+    // Stored instance equal to value, so repeated values share one string
+    public String intern(String value) {
+        return decode(encode(value));
+    }
+
+    public String decode(int code) {
+        return code == NULL ? null : strings[code];
+    }
+
+    // Decodes strings encoded so far and can be read while this dictionary grows,
+    // since encoding never changes strings below current size
+    public StringDictionary frozen() {
+        return codes == null ? this : new StringDictionary(null, strings, size);
+    }
+
+    private Map<String, Integer> codes() {
+        if (codes == null)
+            throw new UnsupportedOperationException("Frozen dictionary only decodes");
+        return codes;
+    }
+}
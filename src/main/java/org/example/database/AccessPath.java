@@ -0,0 +1,15 @@
+package org.example.database;
+
+// How planner reaches candidate rows of query
+public enum AccessPath {
+    // Unique (name, manufacturer) index, at most one row
+    UNIQUE_NAME,
+    // Foreign key index of manufacturers given directly or by country
+    MANUFACTURER_INDEX,
+    // Range scan of date index
+    DATE_INDEX,
+    // Ids in ascending order after afterId of query, stops at limit
+    ID_INDEX,
+    // Every row of table
+    FULL_SCAN
+}
@@ -0,0 +1,156 @@
+package org.example.database;
+
+import org.example.binary.BinaryStrings;
+import org.example.binary.StringDictionary;
+import org.example.entity.Entity;
+import org.example.factory.FromJSONFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+// Table as header followed by length prefixed records:
+// int magic, int version, int record count, then per record int length and entity fields.
+// Since version 2 header is followed by dictionary of distinct strings, int count then
+// strings, and records hold int codes into it instead of strings.
+public class BinaryTableFormat implements TableFormat {
+
+    // "SSTB"
+    static final int MAGIC = 0x53535442;
+    static final int VERSION = 2;
+    // Strings stored inline in records
+    static final int VERSION_INLINE_STRINGS = 1;
+
+    private static final int HEADER_SIZE = 12;
+
+    @Override
+    public <T extends Entity> List<T> read(ReadableByteChannel channel, FromJSONFactory<T> factory) throws IOException {
+        return read(new Input(channel), factory);
+    }
+
+    @Override
+    public <T extends Entity> List<T> read(ByteBuffer buffer, FromJSONFactory<T> factory) throws IOException {
+        return read(new Input(buffer), factory);
+    }
+
+    private <T extends Entity> List<T> read(Input input, FromJSONFactory<T> factory) throws IOException {
+        ByteBuffer header = input.require(HEADER_SIZE);
+        if (header.getInt() != MAGIC)
+            throw new IOException("Not a binary table file");
+        int version = header.getInt();
+        if (version != VERSION && version != VERSION_INLINE_STRINGS)
+            throw new IOException("Unsupported binary table version " + version);
+        int count = header.getInt();
+
+        StringDictionary strings = version == VERSION ? readDictionary(input, factory) : null;
+
+        List<T> entities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = input.require(Integer.BYTES).getInt();
+            if (length < 0)
+                throw new IOException("Negative length of record " + i);
+            ByteBuffer buffer = input.require(length);
+            // Fields are read from view bounded to record, bytes after them are
+            // fields added by later versions and are skipped
+            ByteBuffer record = buffer.slice(buffer.position(), length);
+            buffer.position(buffer.position() + length);
+            try {
+                entities.add(factory.create(record, strings));
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Record " + i + " is shorter than its fields", e);
+            }
+        }
+        return entities;
+    }
+
+    // Strings are interned into dictionary of factory, so rows share them
+    private <T extends Entity> StringDictionary readDictionary(Input input, FromJSONFactory<T> factory) throws IOException {
+        int size = input.require(Integer.BYTES).getInt();
+        StringDictionary strings = new StringDictionary();
+        for (int i = 0; i < size; i++) {
+            int length = input.require(Integer.BYTES).getInt(input.buffer.position());
+            ByteBuffer buffer = input.require(Integer.BYTES + Math.max(length, 0));
+            strings.encode(factory.intern(BinaryStrings.read(buffer)));
+        }
+        return strings;
+    }
+
+    @Override
+    public <T extends Entity> void write(OutputStream out, Iterable<T> entities, int count) throws IOException {
+        // First pass collects strings, records are written in second pass
+        StringDictionary strings = new StringDictionary();
+        DataOutputStream discard = new DataOutputStream(OutputStream.nullOutputStream());
+        for (T t : entities)
+            t.writeBinary(discard, strings);
+
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(out));
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(count);
+        output.writeInt(strings.size());
+        for (int code = 0; code < strings.size(); code++)
+            BinaryStrings.write(output, strings.decode(code));
+
+        // Record is built first to know its length
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(recordBytes);
+        for (T t : entities) {
+            recordBytes.reset();
+            t.writeBinary(record, strings);
+            output.writeInt(recordBytes.size());
+            recordBytes.writeTo(output);
+        }
+        output.flush();
+    }
+
+    @Override
+    public String toString() {
+        return "binary";
+    }
+
+    // Buffer guaranteeing requested number of bytes, refilled from channel if present
+    private static class Input {
+
+        private final ReadableByteChannel channel;
+        private ByteBuffer buffer;
+
+        private Input(ReadableByteChannel channel) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(64 * 1024);
+            buffer.flip();
+        }
+
+        private Input(ByteBuffer buffer) {
+            this.channel = null;
+            this.buffer = buffer;
+        }
+
+        private ByteBuffer require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes)
+                return buffer;
+            if (channel == null)
+                throw new EOFException("Binary table file is truncated");
+            if (bytes > buffer.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(bytes, buffer.capacity() * 2));
+                larger.put(buffer);
+                buffer = larger;
+            } else {
+                buffer.compact();
+            }
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) == -1)
+                    throw new EOFException("Binary table file is truncated");
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.database;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Outcome of bulk operation for every row
+public class BulkReport<T> {
+
+    public enum Reason {
+        DUPLICATE_NAME,
+        MISSING_MANUFACTURER
+    }
+
+    public record Rejection<T>(T entity, Reason reason) {}
+
+    private final List<T> accepted = new ArrayList<>();
+    private final List<Rejection<T>> rejected = new ArrayList<>();
+
+    void accept(T entity) {
+        accepted.add(entity);
+    }
+
+    void reject(T entity, Reason reason) {
+        rejected.add(new Rejection<>(entity, reason));
+    }
+
+    public List<T> getAccepted() {
+        return accepted;
+    }
+
+    public List<Rejection<T>> getRejected() {
+        return rejected;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkReport{" +
+                "accepted=" + accepted.size() +
+                ", rejected=" + rejected +
+                '}';
+    }
+}
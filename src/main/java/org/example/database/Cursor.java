@@ -0,0 +1,71 @@
+package org.example.database;
+
+import org.example.entity.Entity;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Lazily reads entities ordered by id, one page at a time. Next page continues
+// after last id read, so rows inserted or deleted meanwhile don't shift pages.
+// Only current page is held in memory.
+public class Cursor<T extends Entity> implements Iterator<T> {
+
+    // Reads up to limit entities with id greater than given one, ordered by id
+    public interface PageReader<T> {
+        List<T> read(long afterId, int limit);
+    }
+
+    private final PageReader<T> reader;
+    private final int pageSize;
+    private Iterator<T> page = Collections.emptyIterator();
+    private long afterId;
+    private boolean lastPage;
+
+    public Cursor(PageReader<T> reader, int pageSize) {
+        this(reader, pageSize, Long.MIN_VALUE);
+    }
+
+    // Continues after id of last entity read by earlier cursor
+    public Cursor(PageReader<T> reader, int pageSize, long afterId) {
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        this.reader = reader;
+        this.pageSize = pageSize;
+        this.afterId = afterId;
+    }
+
+    // Continuation token, id of last entity read
+    public long getAfterId() {
+        return afterId;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!page.hasNext() && !lastPage) {
+            List<T> entities = reader.read(afterId, pageSize);
+            lastPage = entities.size() < pageSize;
+            page = entities.iterator();
+        }
+        return page.hasNext();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        T entity = page.next();
+        afterId = entity.getId();
+        return entity;
+    }
+
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT), false);
+    }
+}
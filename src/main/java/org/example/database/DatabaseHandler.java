@@ -1,251 +1,568 @@
 package org.example.database;
 
+import org.example.database.index.LongHashMap;
+import org.example.database.index.LongHashSet;
 import org.example.entity.Manufacturer;
 import org.example.entity.Product;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
-import java.util.stream.Collectors;
-
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// Safe for concurrent use. Queries share read lock, writes hold write lock so
+// checks and the changes relying on them are not interleaved with other writes.
 public class DatabaseHandler {
 
+    // Folds logs into table files in background
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "table-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final ManufacturerTableHandler mfTable;
     private final ProductTableHandler pdTable;
+    private final StampedLock lock = new StampedLock();
+    // Latest snapshot, replaced by first reader after a change
+    private volatile Snapshot snapshot;
 
     public DatabaseHandler(String mfTable, String pdTable) {
-        this.mfTable = new ManufacturerTableHandler(mfTable);
-        this.pdTable = new ProductTableHandler(pdTable);
+        this(mfTable, pdTable, true);
+    }
+
+    // Non resident tables are re-read from file on every call
+    public DatabaseHandler(String mfTable, String pdTable, boolean resident) {
+        this(mfTable, pdTable, new TableOptions.Builder().setResident(resident).build());
+    }
+
+    public DatabaseHandler(String mfTable, String pdTable, TableOptions options) {
+        this(mfTable, options, pdTable, options);
+    }
+
+    public DatabaseHandler(String mfTable, TableOptions mfOptions, String pdTable, TableOptions pdOptions) {
+        this.mfTable = new ManufacturerTableHandler(mfTable, mfOptions);
+        this.pdTable = new ProductTableHandler(pdTable, pdOptions);
+        // Compaction holds write lock like any other write, so queries never see
+        // rows and indexes while it rebuilds them
+        this.mfTable.setCompactionRequest(() -> COMPACTOR.execute(() -> write(this.mfTable::compact)));
+        this.pdTable.setCompactionRequest(() -> COMPACTOR.execute(() -> write(this.pdTable::compact)));
+    }
+
+    // Query under shared lock. Resident tables are pinned, so concurrent queries
+    // see same rows and indexes. Tables which must be reloaded first, including
+    // non resident ones, are read under write lock since reload rebuilds indexes.
+    private <R> R read(Supplier<R> query) {
+        long stamp = lock.readLock();
+        try {
+            if (mfTable.pin()) {
+                try {
+                    if (pdTable.pin()) {
+                        try {
+                            return query.get();
+                        } finally {
+                            pdTable.unpin();
+                        }
+                    }
+                } finally {
+                    mfTable.unpin();
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return write(query);
+    }
+
+    private <R> R write(Supplier<R> action) {
+        long stamp = lock.writeLock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void write(Runnable action) {
+        long stamp = lock.writeLock();
+        try {
+            action.run();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Consistent view of both tables. Reused until tables change, then taken again
+    // by first reader which asks for it. Taking it copies nothing, tables copy
+    // their data on next change instead, so writers are never held up by reports.
+    public Snapshot snapshot() {
+        return read(() -> {
+            try (QueryProfile.Stage stage = QueryProfile.begin("database", "snapshot")) {
+                // Reloads tables changed by other processes, so their versions change too
+                mfTable.rows();
+                pdTable.rows();
+                long mfVersion = mfTable.version();
+                long pdVersion = pdTable.version();
+                Snapshot current = snapshot;
+                if (current != null && current.isAt(mfVersion, pdVersion)) {
+                    stage.end(0, 0);
+                    return current;
+                }
+                RowStore<Manufacturer> manufacturers = current == null ? null : current.manufacturersAt(mfVersion);
+                RowStore<Product> products = current == null ? null : current.productsAt(pdVersion);
+                current = new Snapshot(manufacturers != null ? manufacturers : mfTable.frozenRows(), mfVersion,
+                        products != null ? products : pdTable.frozenRows(), pdVersion);
+                snapshot = current;
+                stage.end(0, 0);
+                return current;
+            }
+        });
+    }
+
+    // Runs queries on this thread and reports how they were executed
+    public QueryProfile explain(Runnable queries) {
+        QueryProfile profile = QueryProfile.start();
+        try {
+            queries.run();
+        } finally {
+            QueryProfile.stop();
+        }
+        return profile;
+    }
+
+    // Rows of both tables skipped on load since they hold invalid values, such as
+    // product dates. Tables with any are not rewritten until the rows are fixed in
+    // file or dropped, so writes to non logged tables fail meanwhile.
+    public List<String> readInvalidRows() {
+        return read(() -> {
+            List<String> rows = new ArrayList<>(mfTable.loadInvalidRows());
+            rows.addAll(pdTable.loadInvalidRows());
+            return rows;
+        });
+    }
+
+    // Removes invalid rows from table files, returns messages naming them
+    public List<String> dropInvalidRows() {
+        return write(() -> {
+            List<String> rows = new ArrayList<>(mfTable.dropInvalidRows());
+            rows.addAll(pdTable.dropInvalidRows());
+            return rows;
+        });
+    }
+
+    // Folds logs of logged tables into table files
+    public void compact() {
+        write(() -> {
+            mfTable.compact();
+            pdTable.compact();
+        });
     }
 
     public Product readProductById(long id) {
-        return readAllProducts().stream()
-                .filter(pd -> pd.getId() == id)
-                .findAny()
-                .orElse(null);
+        // Primary key lookup
+        return read(() -> pdTable.loadById(id));
     }
 
     public Manufacturer readManufacturerById(long id) {
-        return readAllManufacturers().stream()
-                .filter(mf -> mf.getId() == id)
-                .findAny()
-                .orElse(null);
+        // Primary key lookup
+        return read(() -> mfTable.loadById(id));
     }
 
     public Manufacturer readManufacturerByName(String name) {
-        return readAllManufacturers().stream()
-                .filter(mf -> mf.getName().equals(name))
-                .findAny()
-                .orElse(null);
+        // Unique name index lookup
+        return read(() -> mfTable.loadByName(name));
     }
 
     public void deleteManufacturerAndAllProducts(Manufacturer manufacturer) {
-        readAllManufacturerProducts(manufacturer).forEach(this::delete);
-        delete(manufacturer);
+        write(() -> {
+            // Product ids from foreign key index, removed with single write
+            pdTable.deleteAll(pdTable.loadIdsByManufacturer(manufacturer.getId()));
+            mfTable.delete(manufacturer.getId());
+            pdTable.manufacturerRemoved(mfTable, manufacturer.getId());
+        });
     }
 
     public List<Product> readAllManufacturerProducts(Manufacturer manufacturer) {
-        return readAllProducts().stream()
-                .filter(pd -> pd.getManufacturerId() == manufacturer.getId())
-                .collect(Collectors.toList());
+        // Foreign key index lookup
+        return read(() -> pdTable.loadByManufacturer(manufacturer.getId()));
     }
 
     public List<Product> readAllProductsByCountry(String country) {
-        return readAllProductManufacturerMap().entrySet().stream()
-                .filter(set -> set.getValue().getCountry().equals(country))
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
+        return read(() -> {
+            // Country index gives manufacturers, foreign key index gives their products
+            long[] manufacturerIds = mfTable.loadIdsByCountry(country);
+            List<Product> productList = new ArrayList<>();
+            for (List<Product> products : pdTable.loadByManufacturers(manufacturerIds))
+                productList.addAll(products);
+            return productList;
+        });
     }
 
     public List<Manufacturer> readAllManufacturersWherePriceLessThan(double price) {
-        return readAllManufacturerProductsMap().entrySet().stream()
-                .filter(set -> set.getValue().stream()
-                        .map(pd -> pd.getPrice() < price)
-                        .reduce(true, (bool1, bool2) -> bool1 && bool2)
-                ).map(Map.Entry::getKey)
-                .collect(Collectors.toList());
+        return read(() -> {
+            // Range scan over per manufacturer maximum prices, manufacturers without
+            // products are at negative infinity
+            LongHashSet manufacturerIds = pdTable.loadManufacturerIdsWherePriceLessThan(price, mfTable);
+            return mfTable.loadByIds(manufacturerIds);
+        });
     }
 
     public Map<Product, Manufacturer> readAllProductManufacturerMapByYear(String year) {
-        return readAllProductManufacturerMap().entrySet().stream()
-                .filter(set -> yearEqualDate(year, set.getKey().getDate()))
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        // Filter before join
+        return read(() -> join(productsByYear(year), OrphanPolicy.SKIP));
     }
 
     public List<Manufacturer> readAllManufacturersByProductNameAndYear(String name, String year) {
-        return readAllProductManufacturerMap().entrySet().stream()
-                .filter(set -> set.getKey().getName().equals(name)
-                        && yearEqualDate(year, set.getKey().getDate())
-                )
-                .map(Map.Entry::getValue)
-                .collect(Collectors.toList());
+        return read(() -> {
+            // Filter before join
+            int[] days = yearEpochDays(year);
+            if (days == null)
+                return new ArrayList<>();
+            List<Product> productList = pdTable.loadByNameAndDateRange(name, days[0], days[1]);
+            return new ArrayList<>(join(productList, OrphanPolicy.SKIP).values());
+        });
     }
 
     public List<Product> readAllProductsByYear(String year) {
-        return readAllProducts().stream()
-                .filter(pd -> yearEqualDate(year, pd.getDate()))
-                .collect(Collectors.toList());
+        return read(() -> productsByYear(year));
+    }
+
+    private List<Product> productsByYear(String year) {
+        int[] days = yearEpochDays(year);
+        if (days == null)
+            return new ArrayList<>();
+        return pdTable.loadByDateRange(days[0], days[1]);
+    }
+
+    // First and last epoch day of year, null if year is not a number
+    private int[] yearEpochDays(String year) {
+        int yearNumber;
+        try {
+            yearNumber = Integer.parseInt(year);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return new int[] {
+                (int) LocalDate.ofYearDay(yearNumber, 1).toEpochDay(),
+                (int) LocalDate.ofYearDay(yearNumber + 1, 1).toEpochDay() - 1
+        };
     }
 
-    private boolean yearEqualDate(String year, String date) {
-        return date.substring(0, 4).equals(year);
+    // Products with date between from and to inclusive, ordered by date
+    public List<Product> readAllProductsByDate(LocalDate from, LocalDate to) {
+        // Date index range scan
+        return read(() -> pdTable.loadByDateRange((int) from.toEpochDay(), (int) to.toEpochDay()));
     }
 
 
     // Product <-> Manufacturer | One <-> One
     public Map<Product, Manufacturer> readAllProductManufacturerMap() {
-        // Use one list in order not to load every time from DB
-        List<Manufacturer> manufacturerList = readAllManufacturers();
-        // Create map
-        return readAllProducts().stream()
-                .collect(Collectors.toMap(
-                        pd -> pd,
-                        pd -> manufacturerList.stream()
-                                .filter(mf -> mf.getId() == pd.getManufacturerId())
-                                .findAny()
-                                .get())
-                );
+        return readAllProductManufacturerMap(OrphanPolicy.SKIP);
+    }
+
+    public Map<Product, Manufacturer> readAllProductManufacturerMap(OrphanPolicy orphanPolicy) {
+        // Whole tables report, built without holding lock
+        Snapshot current = snapshot();
+        try (QueryProfile.Stage stage = QueryProfile.begin("snapshot", "hash join")) {
+            Map<Product, Manufacturer> map = current.readAllProductManufacturerMap(orphanPolicy);
+            stage.end(map.size(), map.size());
+            return map;
+        }
+    }
+
+    // Index nested loop join, manufacturers of products are looked up by primary key,
+    // so cost follows number of products, not size of manufacturer table
+    private Map<Product, Manufacturer> join(List<Product> productList, OrphanPolicy orphanPolicy) {
+        Map<Product, Manufacturer> map = new LinkedHashMap<>();
+        if (productList.isEmpty())
+            return map;
+
+        // Stage is closed even if orphan fails join
+        try (QueryProfile.Stage stage = QueryProfile.begin("join", "primary key lookup")) {
+            RowStore<Manufacturer> manufacturers = mfTable.rows();
+            // Products of one manufacturer share copy of it
+            LongHashMap<Manufacturer> copies = new LongHashMap<>();
+
+            for (Product product : productList) {
+                Manufacturer manufacturer = copies.get(product.getManufacturerId());
+                if (manufacturer == null) {
+                    manufacturer = manufacturers.load(product.getManufacturerId());
+                    if (manufacturer != null)
+                        copies.put(manufacturer.getId(), manufacturer);
+                }
+                if (manufacturer == null) {
+                    switch (orphanPolicy) {
+                        case SKIP -> {
+                            continue;
+                        }
+                        case FAIL -> throw new IllegalStateException(
+                                "Manufacturer " + product.getManufacturerId() + " of " + product + " doesn't exist");
+                    }
+                }
+                map.put(product, manufacturer);
+            }
+            stage.end(productList.size(), map.size());
+            return map;
+        }
     }
 
     // Manufacturer <-> Product | One <-> Many
     public Map<Manufacturer, List<Product>> readAllManufacturerProductsMap() {
-        // Use one list in order not to load every time from DB
-        List<Product> productList = readAllProducts();
-        // Create map
-        return readAllManufacturers().stream()
-                .collect(Collectors.toMap(
-                        mf -> mf,
-                        mf -> productList.stream()
-                                .filter(pd -> pd.getManufacturerId() == mf.getId())
-                                .collect(Collectors.toList())
-                ));
+        // Whole tables report, built without holding lock
+        Snapshot current = snapshot();
+        try (QueryProfile.Stage stage = QueryProfile.begin("snapshot", "group by manufacturer")) {
+            Map<Manufacturer, List<Product>> map = current.readAllManufacturerProductsMap();
+            stage.end(map.size(), map.size());
+            return map;
+        }
+    }
+
+    // Products matching query. Manufacturer predicates are resolved to manufacturer
+    // ids first, so products are filtered before anything is joined.
+    public List<Product> query(ProductQuery query) {
+        return read(() -> pdTable.query(query, manufacturerIds(query)));
+    }
+
+    // Products matching query with their manufacturers
+    public Map<Product, Manufacturer> queryWithManufacturers(ProductQuery query) {
+        return read(() -> join(pdTable.query(query, manufacturerIds(query)), OrphanPolicy.SKIP));
+    }
+
+    // Manufacturers of products matching query, in order of their first product.
+    // Limit of query applies to products.
+    public List<Manufacturer> queryManufacturers(ProductQuery query) {
+        return read(() -> {
+            LongHashSet ids = new LongHashSet();
+            for (Product product : pdTable.query(query, manufacturerIds(query)))
+                ids.add(product.getManufacturerId());
+            return mfTable.loadByIds(ids);
+        });
+    }
+
+    // Products matching query, lazily read pageSize at a time ordered by id.
+    // Order of query is ignored, its limit applies to whole stream.
+    public Stream<Product> streamProducts(ProductQuery query, int pageSize) {
+        Cursor<Product> cursor = new Cursor<>((afterId, limit) ->
+                read(() -> pdTable.query(query.page(afterId, limit), manufacturerIds(query))), pageSize);
+        return cursor.stream().limit(query.getLimit());
+    }
+
+    // Manufacturers allowed by query, null if query doesn't restrict them
+    private long[] manufacturerIds(ProductQuery query) {
+        Long manufacturerId = query.getManufacturerId();
+        if (query.getCountry() == null)
+            return manufacturerId == null ? null : new long[] {manufacturerId};
+        long[] countryIds = mfTable.loadIdsByCountry(query.getCountry());
+        if (manufacturerId == null)
+            return countryIds;
+        for (long id : countryIds)
+            if (id == manufacturerId)
+                return new long[] {id};
+        return new long[0];
     }
 
     // Manufacturer related methods
     public void create(Manufacturer entity) {
-        // Load all manufacturers from DB
-        List<Manufacturer> manufacturerList = mfTable.loadAll();
+        write(() -> insert(entity));
+    }
+
+    private void insert(Manufacturer entity) {
+        // Rows and indexes loaded once for all checks
+        RowStore<Manufacturer> manufacturers = mfTable.rows();
+
         // Don't create if matching name exists
-        for (Manufacturer manufacturer: manufacturerList)
-            if (manufacturer.getName().equals(entity.getName()))
-                return;
+        if (mfTable.idByName(entity.getName()) != null)
+            return;
 
         // Generate id
-        long generatedId = UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE;
-        entity.setId(generatedId);
+        entity.setId(mfTable.nextId(manufacturers));
 
         // Save to DB
-        manufacturerList.add(entity);
-        mfTable.saveAll(manufacturerList);
+        mfTable.insert(entity);
+        pdTable.manufacturerAdded(mfTable, entity.getId());
+    }
+
+    // Creates manufacturers with a single load and save, rejects duplicate names
+    public BulkReport<Manufacturer> createAllManufacturers(Collection<Manufacturer> entities) {
+        return write(() -> insertAllManufacturers(entities));
+    }
+
+    private BulkReport<Manufacturer> insertAllManufacturers(Collection<Manufacturer> entities) {
+        BulkReport<Manufacturer> report = new BulkReport<>();
+
+        // Rows and indexes loaded once for whole batch, not for every entity
+        RowStore<Manufacturer> manufacturers = mfTable.rows();
+        // Names taken by accepted entities, ones in DB are checked by index
+        Set<String> names = new HashSet<>();
+
+        for (Manufacturer entity : entities) {
+            if (mfTable.idByName(entity.getName()) != null || !names.add(entity.getName())) {
+                report.reject(entity, BulkReport.Reason.DUPLICATE_NAME);
+                continue;
+            }
+            entity.setId(mfTable.nextId(manufacturers));
+            report.accept(entity);
+        }
+
+        // Save to DB
+        mfTable.insertAll(report.getAccepted());
+        for (Manufacturer entity : report.getAccepted())
+            pdTable.manufacturerAdded(mfTable, entity.getId());
+        return report;
     }
 
     public List<Manufacturer> readAllManufacturers() {
         // No logic for load
-        return mfTable.loadAll();
+        return read(mfTable::loadAll);
+    }
+
+    // Up to limit manufacturers with ids greater than afterId, ordered by id
+    public List<Manufacturer> readManufacturersAfter(long afterId, int limit) {
+        return read(() -> mfTable.loadPage(afterId, limit));
+    }
+
+    // All manufacturers, lazily read pageSize at a time ordered by id
+    public Stream<Manufacturer> streamManufacturers(int pageSize) {
+        return new Cursor<>(this::readManufacturersAfter, pageSize).stream();
     }
 
     public void update(Manufacturer entity) {
-        // Load all manufacturers from DB
-        List<Manufacturer> manufacturerList = mfTable.loadAll();
-        // Don't update if matching name exists
-        for (Manufacturer manufacturer: manufacturerList)
-            if (manufacturer.getName().equals(entity.getName()))
-                return;
-        // If same id, replace
-        for (int i = 0; i < manufacturerList.size(); i++) {
-            Manufacturer manufacturer = manufacturerList.get(i);
-            if (manufacturer.getId() == entity.getId())
-                manufacturerList.set(i, entity);
-        }
+        write(() -> replace(entity));
+    }
 
-        // Save to DB
-        manufacturerList.add(entity);
-        mfTable.saveAll(manufacturerList);
+    private void replace(Manufacturer entity) {
+        // Don't update if other manufacturer has matching name
+        Long id = mfTable.loadIdByName(entity.getName());
+        if (id != null && id != entity.getId())
+            return;
+
+        // Replace entity with same id and save to DB
+        mfTable.update(entity);
     }
 
     public void delete(Manufacturer entity) {
-        // Load all manufacturers from DB
-        List<Manufacturer> manufacturerList = mfTable.loadAll();
-        // Remove entity with matching id
-        manufacturerList.removeIf(manufacturer -> manufacturer.getId() == entity.getId());
-
-        // Save to DB
-        mfTable.saveAll(manufacturerList);
+        // Remove entity with matching id from DB
+        write(() -> {
+            mfTable.delete(entity.getId());
+            pdTable.manufacturerRemoved(mfTable, entity.getId());
+        });
     }
 
     // Product related methods
     public void create(Product entity) {
+        write(() -> insert(entity));
+    }
 
-        List<Product> productList = pdTable.loadAll();
+    private void insert(Product entity) {
+        // Rows and indexes loaded once for all checks
+        RowStore<Manufacturer> manufacturers = mfTable.rows();
+        RowStore<Product> products = pdTable.rows();
 
         // Don't create if specified manufacturer doesn't exist
-        int size = mfTable.loadAll().stream()
-                .filter(mf -> mf.getId() == entity.getManufacturerId())
-                .toList()
-                .size();
-        if (size != 1)
+        if (!manufacturers.contains(entity.getManufacturerId()))
             return;
 
         // Don't create products with same name and manufacturer
-        size = productList.stream()
-                .filter(prd -> prd.getName().equals(entity.getName()))
-                .filter(prd -> prd.getManufacturerId() == entity.getManufacturerId())
-                .toList()
-                .size();
-        if (size > 0)
+        if (pdTable.idByNameAndManufacturer(entity.getName(), entity.getManufacturerId()) != null)
             return;
 
-        long generatedId = UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE;
-        entity.setId(generatedId);
+        entity.setId(pdTable.nextId(products));
+
+        // Save to DB
+        pdTable.insert(entity);
+    }
+
+    // Creates products with a single load and save, rejects missing manufacturers
+    // and duplicate name and manufacturer pairs
+    public BulkReport<Product> createAllProducts(Collection<Product> entities) {
+        return write(() -> insertAllProducts(entities));
+    }
+
+    private BulkReport<Product> insertAllProducts(Collection<Product> entities) {
+        BulkReport<Product> report = new BulkReport<>();
+
+        // Rows and indexes loaded once for whole batch, not for every entity
+        RowStore<Manufacturer> manufacturers = mfTable.rows();
+        RowStore<Product> products = pdTable.rows();
+        // Name and manufacturer pairs taken by accepted entities, ones in DB are checked by index
+        Set<ProductKey> keys = new HashSet<>();
+
+        for (Product entity : entities) {
+            if (!manufacturers.contains(entity.getManufacturerId())) {
+                report.reject(entity, BulkReport.Reason.MISSING_MANUFACTURER);
+                continue;
+            }
+            if (pdTable.idByNameAndManufacturer(entity.getName(), entity.getManufacturerId()) != null
+                    || !keys.add(new ProductKey(entity.getName(), entity.getManufacturerId()))) {
+                report.reject(entity, BulkReport.Reason.DUPLICATE_NAME);
+                continue;
+            }
+            entity.setId(pdTable.nextId(products));
+            report.accept(entity);
+        }
 
         // Save to DB
-        productList.add(entity);
-        pdTable.saveAll(productList);
+        pdTable.insertAll(report.getAccepted());
+        return report;
     }
 
     public List<Product> readAllProducts() {
         // No logic present
-        return pdTable.loadAll();
+        return read(pdTable::loadAll);
     }
 
-    public void update(Product entity) {
+    // Up to limit products with ids greater than afterId, ordered by id
+    public List<Product> readProductsAfter(long afterId, int limit) {
+        return read(() -> pdTable.loadPage(afterId, limit));
+    }
+
+    // All products, lazily read pageSize at a time ordered by id
+    public Stream<Product> streamProducts(int pageSize) {
+        return new Cursor<>(this::readProductsAfter, pageSize).stream();
+    }
 
-        List<Product> productList = pdTable.loadAll();
+    public void update(Product entity) {
+        write(() -> replace(entity));
+    }
 
-        // Remove to be updated product
-        productList.removeIf(prd -> prd.getId() == entity.getId());
+    private void replace(Product entity) {
 
         // Don't update if specified manufacturer doesn't exist
-        int size = mfTable.loadAll().stream()
-                .filter(mf -> mf.getId() == entity.getManufacturerId())
-                .toList()
-                .size();
-        if (size != 1)
+        if (!mfTable.exists(entity.getManufacturerId()))
             return;
 
-        // Don't update products with same name and manufacturer
-        size = productList.stream()
-                .filter(prd -> prd.getName().equals(entity.getName()))
-                .filter(prd -> prd.getManufacturerId() == entity.getManufacturerId())
-                .toList()
-                .size();
-        if (size > 0)
+        // Don't update if other product has same name and manufacturer
+        Long id = pdTable.loadIdByNameAndManufacturer(entity.getName(), entity.getManufacturerId());
+        if (id != null && id != entity.getId())
             return;
 
-        // Save to DB
-        productList.add(entity);
-        pdTable.saveAll(productList);
+        // Replace product with same id and save to DB
+        pdTable.update(entity);
     }
 
     public void delete(Product entity) {
+        // Remove same product from DB
+        write(() -> pdTable.delete(entity.getId()));
+    }
 
-        List<Product> productList = pdTable.loadAll();
-
-        // Remove same product
-        productList.removeIf(prd -> prd.getId() == entity.getId());
-
-        // Save to DB
-        pdTable.saveAll(productList);
+    // Removes products with matching ids from DB with single write
+    public void deleteAll(Collection<Product> entities) {
+        long[] ids = entities.stream()
+                .mapToLong(Product::getId)
+                .toArray();
+        write(() -> pdTable.deleteAll(ids));
     }
 
+    // Product uniqueness key
+    private record ProductKey(String name, long manufacturerId) {}
+
 }
@@ -0,0 +1,78 @@
+package org.example.database;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Hands out increasing ids from blocks reserved in <table>.seq file, which holds
+// first id not reserved by anyone yet. Ids within block are taken without locking,
+// only reserving next block locks the file, so processes never get same block.
+// Unused rest of block is skipped when process exits.
+class IdAllocator {
+
+    static final int BLOCK_SIZE = 64;
+
+    private final Path path;
+    private final TableLock fileLock;
+    private final AtomicReference<Block> block = new AtomicReference<>(new Block(0, 0));
+
+    IdAllocator(String tableFilename, TableLock fileLock) {
+        this.path = Paths.get(tableFilename + ".seq");
+        this.fileLock = fileLock;
+    }
+
+    long next() {
+        while (true) {
+            Block current = block.get();
+            long id = current.next.getAndIncrement();
+            if (id < current.end)
+                return id;
+            // Only one thread reserves, others retry with its block
+            synchronized (this) {
+                if (block.get() == current)
+                    block.set(fileLock.exclusive(this::reserve));
+            }
+        }
+    }
+
+    private Block reserve() {
+        long start = 1;
+        try {
+            if (Files.exists(path))
+                start = Long.parseLong(Files.readString(path, StandardCharsets.UTF_8).trim());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NumberFormatException e) {
+            // Sequence is written atomically, so it isn't repaired by guessing
+            throw new UncheckedIOException(new IOException("Corrupted id sequence " + path, e));
+        }
+
+        long end = start + BLOCK_SIZE;
+        Path temporary = Paths.get(path + ".tmp");
+        try {
+            Files.writeString(temporary, Long.toString(end), StandardCharsets.UTF_8);
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // Handing out ids which aren't persisted could repeat them after restart
+            throw new UncheckedIOException(e);
+        }
+        return new Block(start, end);
+    }
+
+    private static class Block {
+
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.database;
+
+import org.example.entity.Entity;
+import org.example.factory.FromJSONFactory;
+import org.example.json.JsonArraySplitter;
+import org.example.json.JsonReader;
+import org.example.json.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Table as JSON array of entity objects
+public class JsonTableFormat implements TableFormat {
+
+    @Override
+    public <T extends Entity> List<T> read(ReadableByteChannel channel, FromJSONFactory<T> factory) {
+        return factory.createAll(new JsonReader(channel));
+    }
+
+    @Override
+    public <T extends Entity> List<T> read(ByteBuffer buffer, FromJSONFactory<T> factory) {
+        return factory.createAll(new JsonReader(buffer));
+    }
+
+    // Array is split at element boundaries into few chunks per worker of common
+    // fork/join pool, chunks are parsed concurrently and concatenated in order
+    @Override
+    public <T extends Entity> List<T> readParallel(ByteBuffer buffer, FromJSONFactory<T> factory) {
+        int chunkSize = Math.max(1, buffer.remaining() / (4 * ForkJoinPool.getCommonPoolParallelism()));
+        List<JsonArraySplitter.Chunk> chunks = JsonArraySplitter.split(buffer, chunkSize);
+        return factory.parseConcurrently(() ->
+                ForkJoinPool.commonPool().invoke(new ParseTask<>(chunks, 0, chunks.size(), factory)));
+    }
+
+    @Override
+    public <T extends Entity> void write(OutputStream out, Iterable<T> entities, int count) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        JsonWriter jsonWriter = new JsonWriter(writer);
+        jsonWriter.beginArray();
+        for (T t : entities)
+            t.writeJSON(jsonWriter);
+        jsonWriter.endArray();
+        writer.flush();
+    }
+
+    @Override
+    public String toString() {
+        return "json";
+    }
+
+    // Parses range of chunks, halving it until single chunk is left
+    private static class ParseTask<T> extends RecursiveTask<List<T>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<JsonArraySplitter.Chunk> chunks;
+        private final int from;
+        private final int to;
+        private final FromJSONFactory<T> factory;
+
+        private ParseTask(List<JsonArraySplitter.Chunk> chunks, int from, int to, FromJSONFactory<T> factory) {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+            this.factory = factory;
+        }
+
+        @Override
+        protected List<T> compute() {
+            if (to - from <= 1) {
+                if (from == to)
+                    return new ArrayList<>();
+                JsonArraySplitter.Chunk chunk = chunks.get(from);
+                return factory.createAll(new JsonReader(chunk.buffer()), chunk.count());
+            }
+            int middle = (from + to) >>> 1;
+            ParseTask<T> right = new ParseTask<>(chunks, middle, to, factory);
+            right.fork();
+            List<T> entities = new ParseTask<>(chunks, from, middle, factory).compute();
+            entities.addAll(right.join());
+            return entities;
+        }
+    }
+}
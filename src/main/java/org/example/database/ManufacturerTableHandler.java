@@ -1,10 +1,70 @@
 package org.example.database;
 
+import org.example.binary.StringDictionary;
+import org.example.database.index.ForeignKeyIndex;
+import org.example.database.index.UniqueIndex;
 import org.example.entity.Manufacturer;
 import org.example.factory.ManufacturerFactory;
 
 public class ManufacturerTableHandler extends TableHandler<Manufacturer> {
+
+    // Country code -> manufacturer ids
+    private final ForeignKeyIndex<Manufacturer> countryIndex
+            = new ForeignKeyIndex<>(mf -> dictionary().encode(mf.getCountry()), Manufacturer::getId);
+
+    // Name code -> manufacturer id
+    private final UniqueIndex<Manufacturer, Integer> nameIndex
+            = new UniqueIndex<>(mf -> dictionary().encode(mf.getName()), Manufacturer::getId);
+
     public ManufacturerTableHandler(String filename) {
-        super(filename, new ManufacturerFactory());
+        this(filename, false);
+    }
+
+    public ManufacturerTableHandler(String filename, boolean resident) {
+        this(filename, new TableOptions.Builder().setResident(resident).build());
+    }
+
+    public ManufacturerTableHandler(String filename, TableOptions options) {
+        super(filename, new ManufacturerFactory(new StringDictionary()), options);
+        addIndex(countryIndex);
+        addIndex(nameIndex);
+    }
+
+    // Id of manufacturer with name or null
+    Long loadIdByName(String name) {
+        // Reloads index if file was changed
+        rows();
+        return idByName(name);
+    }
+
+    // Same as loadIdByName, with index of rows last returned by rows(), so
+    // batches check many names against single load
+    Long idByName(String name) {
+        int code = dictionary().code(name);
+        if (code == StringDictionary.ABSENT)
+            return null;
+        return nameIndex.get(code);
+    }
+
+    Manufacturer loadByName(String name) {
+        try (QueryProfile.Stage stage = QueryProfile.begin(getFilename(), "unique name index")) {
+            RowStore<Manufacturer> rows = rows();
+            Long id = idByName(name);
+            Manufacturer manufacturer = id == null ? null : rows.load(id);
+            stage.end(id == null ? 0 : 1, manufacturer == null ? 0 : 1);
+            return manufacturer;
+        }
+    }
+
+    long[] loadIdsByCountry(String country) {
+        try (QueryProfile.Stage stage = QueryProfile.begin(getFilename(), "country index")) {
+            // Reloads index if file was changed
+            rows();
+            // Country nobody has was never encoded
+            int code = dictionary().code(country);
+            long[] ids = code == StringDictionary.ABSENT ? new long[0] : countryIndex.get(code).toArray();
+            stage.end(ids.length, ids.length);
+            return ids;
+        }
     }
 }
@@ -0,0 +1,93 @@
+package org.example.database;
+
+import org.example.database.index.LongHashMap;
+import org.example.entity.Entity;
+import org.example.factory.FromJSONFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+// Rows kept as entity objects in primary key hash index. Stored entities are
+// replaced, never changed, so frozen stores share them.
+public class ObjectRowStore<T extends Entity> implements RowStore<T> {
+
+    private final FromJSONFactory<T> factory;
+    private final boolean frozen;
+    private LongHashMap<T> rows;
+    // Rows map is shared with frozen store
+    private boolean shared;
+
+    public ObjectRowStore(FromJSONFactory<T> factory, int expectedSize) {
+        this(factory, new LongHashMap<>(expectedSize), false);
+    }
+
+    private ObjectRowStore(FromJSONFactory<T> factory, LongHashMap<T> rows, boolean frozen) {
+        this.factory = factory;
+        this.rows = rows;
+        this.frozen = frozen;
+    }
+
+    @Override
+    public int size() {
+        return rows.size();
+    }
+
+    @Override
+    public boolean contains(long id) {
+        return rows.containsKey(id);
+    }
+
+    @Override
+    public T load(long id) {
+        T entity = rows.get(id);
+        return entity == null ? null : factory.copy(entity);
+    }
+
+    @Override
+    public List<T> loadAll() {
+        List<T> copies = new ArrayList<>(rows.size());
+        for (T t : rows)
+            copies.add(factory.copy(t));
+        return copies;
+    }
+
+    @Override
+    public T put(T entity) {
+        beforeChange();
+        return rows.put(entity.getId(), entity);
+    }
+
+    @Override
+    public T remove(long id) {
+        beforeChange();
+        return rows.remove(id);
+    }
+
+    @Override
+    public long[] ids() {
+        return rows.keys();
+    }
+
+    @Override
+    public RowStore<T> freeze() {
+        if (frozen)
+            return this;
+        shared = true;
+        return new ObjectRowStore<>(factory, rows, true);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return rows.iterator();
+    }
+
+    private void beforeChange() {
+        if (frozen)
+            throw new UnsupportedOperationException("Frozen rows can't be changed");
+        if (shared) {
+            rows = rows.copy();
+            shared = false;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package org.example.database;
+
+// What to do with products referencing a manufacturer that doesn't exist
+public enum OrphanPolicy {
+    // Leave product out of result
+    SKIP,
+    // Map product to null manufacturer
+    KEEP,
+    // Throw IllegalStateException
+    FAIL
+}
@@ -0,0 +1,252 @@
+package org.example.database;
+
+import org.example.database.index.LongIntHashMap;
+import org.example.binary.StringDictionary;
+import org.example.entity.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// Products as struct of arrays, one primitive array per field and
+// dictionary encoded names. Product objects are only built for returned rows.
+// Rows are appended in insertion order, a position is live while id maps to it.
+public class ProductColumnStore implements RowStore<Product> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final StringDictionary names;
+    private final boolean frozen;
+    // Id -> position in columns
+    private LongIntHashMap positions;
+    // Positions and columns are shared with frozen store
+    private boolean shared;
+
+    private long[] ids;
+    private long[] manufacturerIds;
+    private double[] prices;
+    private int[] epochDays;
+    private int[] nameCodes;
+    private int used;
+
+    public ProductColumnStore(int expectedSize) {
+        this(expectedSize, new StringDictionary());
+    }
+
+    public ProductColumnStore(int expectedSize, StringDictionary names) {
+        int capacity = Math.max(MIN_CAPACITY, expectedSize);
+        this.positions = new LongIntHashMap(capacity);
+        this.names = names;
+        ids = new long[capacity];
+        manufacturerIds = new long[capacity];
+        prices = new double[capacity];
+        epochDays = new int[capacity];
+        nameCodes = new int[capacity];
+        frozen = false;
+    }
+
+    private ProductColumnStore(ProductColumnStore other) {
+        positions = other.positions;
+        names = other.names.frozen();
+        ids = other.ids;
+        manufacturerIds = other.manufacturerIds;
+        prices = other.prices;
+        epochDays = other.epochDays;
+        nameCodes = other.nameCodes;
+        used = other.used;
+        frozen = true;
+    }
+
+    // Column access by position, for scans
+    public int positionLimit() {
+        return used;
+    }
+
+    // Position of id or LongIntHashMap.MISSING
+    public int position(long id) {
+        return positions.get(id);
+    }
+
+    public boolean isLive(int position) {
+        return positions.get(ids[position]) == position;
+    }
+
+    public long id(int position) {
+        return ids[position];
+    }
+
+    public long manufacturerId(int position) {
+        return manufacturerIds[position];
+    }
+
+    public double price(int position) {
+        return prices[position];
+    }
+
+    public int epochDay(int position) {
+        return epochDays[position];
+    }
+
+    public int nameCode(int position) {
+        return nameCodes[position];
+    }
+
+    public StringDictionary names() {
+        return names;
+    }
+
+    public Product materialize(int position) {
+        return new Product.Builder()
+                .setId(ids[position])
+                .setName(names.decode(nameCodes[position]))
+                .setManufacturerId(manufacturerIds[position])
+                .setEpochDay(epochDays[position])
+                .setPrice(prices[position])
+                .build();
+    }
+
+    @Override
+    public int size() {
+        return positions.size();
+    }
+
+    @Override
+    public boolean contains(long id) {
+        return positions.containsKey(id);
+    }
+
+    @Override
+    public Product load(long id) {
+        int position = positions.get(id);
+        return position == LongIntHashMap.MISSING ? null : materialize(position);
+    }
+
+    @Override
+    public List<Product> loadAll() {
+        List<Product> products = new ArrayList<>(size());
+        for (int position = 0; position < used; position++)
+            if (isLive(position))
+                products.add(materialize(position));
+        return products;
+    }
+
+    @Override
+    public Product put(Product entity) {
+        beforeChange();
+        int position = positions.get(entity.getId());
+        Product previous = null;
+        if (position != LongIntHashMap.MISSING) {
+            // Update in place keeps insertion order
+            previous = materialize(position);
+        } else {
+            if (used == ids.length)
+                // Reclaim removed positions first, grow only when mostly full
+                resize(size() < used / 2 ? ids.length : ids.length * 2);
+            position = used++;
+            positions.put(entity.getId(), position);
+        }
+        ids[position] = entity.getId();
+        manufacturerIds[position] = entity.getManufacturerId();
+        prices[position] = entity.getPrice();
+        epochDays[position] = entity.getEpochDay();
+        nameCodes[position] = names.encode(entity.getName());
+        return previous;
+    }
+
+    @Override
+    public Product remove(long id) {
+        beforeChange();
+        int position = positions.remove(id);
+        return position == LongIntHashMap.MISSING ? null : materialize(position);
+    }
+
+    @Override
+    public long[] ids() {
+        long[] result = new long[size()];
+        int i = 0;
+        for (int position = 0; position < used; position++)
+            if (isLive(position))
+                result[i++] = ids[position];
+        return result;
+    }
+
+    @Override
+    public RowStore<Product> freeze() {
+        if (frozen)
+            return this;
+        shared = true;
+        return new ProductColumnStore(this);
+    }
+
+    @Override
+    public Iterator<Product> iterator() {
+        return new Iterator<>() {
+
+            private int position = nextLive(0);
+
+            @Override
+            public boolean hasNext() {
+                return position < used;
+            }
+
+            @Override
+            public Product next() {
+                if (position >= used)
+                    throw new NoSuchElementException();
+                Product product = materialize(position);
+                position = nextLive(position + 1);
+                return product;
+            }
+        };
+    }
+
+    private int nextLive(int position) {
+        while (position < used && !isLive(position))
+            position++;
+        return position;
+    }
+
+    // Dictionary is not copied, encoding only appends strings frozen store doesn't see
+    private void beforeChange() {
+        if (frozen)
+            throw new UnsupportedOperationException("Frozen rows can't be changed");
+        if (shared) {
+            positions = positions.copy();
+            ids = ids.clone();
+            manufacturerIds = manufacturerIds.clone();
+            prices = prices.clone();
+            epochDays = epochDays.clone();
+            nameCodes = nameCodes.clone();
+            shared = false;
+        }
+    }
+
+    // Moves live rows to the front and resizes columns
+    private void resize(int capacity) {
+        int live = 0;
+        for (int position = 0; position < used; position++) {
+            if (!isLive(position))
+                continue;
+            if (live != position) {
+                ids[live] = ids[position];
+                manufacturerIds[live] = manufacturerIds[position];
+                prices[live] = prices[position];
+                epochDays[live] = epochDays[position];
+                nameCodes[live] = nameCodes[position];
+                positions.put(ids[live], live);
+            }
+            live++;
+        }
+        used = live;
+
+        if (capacity != ids.length) {
+            ids = Arrays.copyOf(ids, capacity);
+            manufacturerIds = Arrays.copyOf(manufacturerIds, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            epochDays = Arrays.copyOf(epochDays, capacity);
+            nameCodes = Arrays.copyOf(nameCodes, capacity);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package org.example.database;
+
+import java.time.LocalDate;
+
+// Conjunction of product predicates with ordering and limit, unset predicates
+// match everything. Country is predicate on manufacturer of product.
+public class ProductQuery {
+
+    public enum Order {
+        // Table order
+        NONE, ID, NAME, DATE, PRICE
+    }
+
+    private Long manufacturerId;
+    private String country;
+    private String name;
+    // Epoch days, inclusive
+    private Integer fromEpochDay;
+    private Integer toEpochDay;
+    // Inclusive
+    private Double minPrice;
+    private Double maxPrice;
+    // Only ids greater than this, continues paging ordered by id
+    private Long afterId;
+    private Order order = Order.NONE;
+    private boolean descending;
+    private int limit = Integer.MAX_VALUE;
+
+    public ProductQuery() {}
+
+    public static class Builder {
+
+        private final ProductQuery query;
+
+        public Builder() {
+            query = new ProductQuery();
+        }
+
+        public Builder setManufacturerId(long manufacturerId) {
+            query.manufacturerId = manufacturerId;
+            return this;
+        }
+
+        public Builder setCountry(String country) {
+            query.country = country;
+            return this;
+        }
+
+        public Builder setName(String name) {
+            query.name = name;
+            return this;
+        }
+
+        public Builder setDateRange(LocalDate from, LocalDate to) {
+            query.fromEpochDay = (int) from.toEpochDay();
+            query.toEpochDay = (int) to.toEpochDay();
+            return this;
+        }
+
+        public Builder setYear(int year) {
+            return setDateRange(LocalDate.ofYearDay(year, 1), LocalDate.ofYearDay(year + 1, 1).minusDays(1));
+        }
+
+        public Builder setPriceRange(double minPrice, double maxPrice) {
+            query.minPrice = minPrice;
+            query.maxPrice = maxPrice;
+            return this;
+        }
+
+        public Builder setAfterId(long afterId) {
+            query.afterId = afterId;
+            return this;
+        }
+
+        public Builder setOrder(Order order) {
+            query.order = order;
+            return this;
+        }
+
+        public Builder setDescending(boolean descending) {
+            query.descending = descending;
+            return this;
+        }
+
+        public Builder setLimit(int limit) {
+            query.limit = limit;
+            return this;
+        }
+
+        public ProductQuery build() {
+            return query;
+        }
+    }
+
+    public Long getManufacturerId() {
+        return manufacturerId;
+    }
+
+    public String getCountry() {
+        return country;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Integer getFromEpochDay() {
+        return fromEpochDay;
+    }
+
+    public Integer getToEpochDay() {
+        return toEpochDay;
+    }
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public Long getAfterId() {
+        return afterId;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    // Page of same predicates ordered by id, continuing after given id
+    ProductQuery page(long afterId, int limit) {
+        ProductQuery page = new ProductQuery();
+        page.manufacturerId = manufacturerId;
+        page.country = country;
+        page.name = name;
+        page.fromEpochDay = fromEpochDay;
+        page.toEpochDay = toEpochDay;
+        page.minPrice = minPrice;
+        page.maxPrice = maxPrice;
+        page.afterId = this.afterId == null ? afterId : Math.max(afterId, this.afterId);
+        page.order = Order.ID;
+        page.limit = limit;
+        return page;
+    }
+}
@@ -1,10 +1,350 @@
 package org.example.database;
 
+import org.example.binary.StringDictionary;
+import org.example.database.index.ForeignKeyIndex;
+import org.example.database.index.IntRangeIndex;
+import org.example.database.index.LongHashSet;
+import org.example.database.index.MaxAggregateIndex;
+import org.example.database.index.UniqueIndex;
+import org.example.entity.Manufacturer;
 import org.example.entity.Product;
 import org.example.factory.ProductFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.IntConsumer;
+
 public class ProductTableHandler extends TableHandler<Product> {
+
+    // Manufacturer id -> product ids
+    private final ForeignKeyIndex<Product> manufacturerIndex
+            = new ForeignKeyIndex<>(Product::getManufacturerId, Product::getId);
+
+    // Epoch day -> product ids
+    private final IntRangeIndex<Product> dateIndex
+            = new IntRangeIndex<>(Product::getEpochDay, Product::getId);
+
+    // Manufacturer id -> maximum product price, manufacturers without products
+    // are kept at negative infinity
+    private final MaxAggregateIndex<Product> maxPriceIndex
+            = new MaxAggregateIndex<>(Product::getManufacturerId, Product::getPrice);
+    // Generations of both tables when manufacturers were last added to maxPriceIndex
+    private long indexedGeneration = -1;
+    private long indexedManufacturerGeneration = -1;
+
+    // Name code and manufacturer id -> product id
+    private final UniqueIndex<Product, NameKey> nameIndex
+            = new UniqueIndex<>(pd -> new NameKey(dictionary().encode(pd.getName()), pd.getManufacturerId()), Product::getId);
+
     public ProductTableHandler(String product_file) {
-        super(product_file, new ProductFactory());
+        this(product_file, false);
+    }
+
+    public ProductTableHandler(String product_file, boolean resident) {
+        this(product_file, new TableOptions.Builder().setResident(resident).build());
+    }
+
+    public ProductTableHandler(String product_file, TableOptions options) {
+        super(product_file, new ProductFactory(new StringDictionary()), options);
+        addIndex(manufacturerIndex);
+        addIndex(dateIndex);
+        addIndex(maxPriceIndex);
+        addIndex(nameIndex);
+    }
+
+    // Id of product with name made by manufacturer or null
+    Long loadIdByNameAndManufacturer(String name, long manufacturerId) {
+        // Reloads index if file was changed
+        rows();
+        return idByNameAndManufacturer(name, manufacturerId);
+    }
+
+    // Same as loadIdByNameAndManufacturer, with index of rows last returned by rows()
+    Long idByNameAndManufacturer(String name, long manufacturerId) {
+        int code = dictionary().code(name);
+        if (code == StringDictionary.ABSENT)
+            return null;
+        return nameIndex.get(new NameKey(code, manufacturerId));
+    }
+
+    @Override
+    protected RowStore<Product> createStore(int expectedSize) {
+        // Name codes of table dictionary, parsed names are already in it
+        return new ProductColumnStore(expectedSize, dictionary());
+    }
+
+    private ProductColumnStore columns() {
+        return (ProductColumnStore) rows();
+    }
+
+    List<Product> loadByManufacturer(long manufacturerId) {
+        try (QueryProfile.Stage stage = QueryProfile.begin(getFilename(), "manufacturer index")) {
+            RowStore<Product> rows = rows();
+            LongHashSet ids = manufacturerIndex.get(manufacturerId);
+            List<Product> products = loadAll(rows, ids);
+            stage.end(ids.size(), products.size());
+            return products;
+        }
+    }
+
+    long[] loadIdsByManufacturer(long manufacturerId) {
+        rows();
+        return manufacturerIndex.get(manufacturerId).toArray();
+    }
+
+    // Products of every manufacturer, in same order as ids
+    List<List<Product>> loadByManufacturers(long[] manufacturerIds) {
+        try (QueryProfile.Stage stage = QueryProfile.begin(getFilename(), "manufacturer index")) {
+            RowStore<Product> rows = rows();
+            List<List<Product>> products = new ArrayList<>(manufacturerIds.length);
+            long count = 0;
+            for (long manufacturerId : manufacturerIds) {
+                List<Product> group = loadAll(rows, manufacturerIndex.get(manufacturerId));
+                products.add(group);
+                count += group.size();
+            }
+            stage.end(count, count);
+            return products;
+        }
+    }
+
+    // Products with date between from and to inclusive, ordered by date
+    List<Product> loadByDateRange(int fromEpochDay, int toEpochDay) {
+        try (QueryProfile.Stage stage = QueryProfile.begin(getFilename(), "date index")) {
+            RowStore<Product> rows = rows();
+            LongHashSet ids = dateIndex.range(fromEpochDay, toEpochDay);
+            List<Product> products = loadAll(rows, ids);
+            stage.end(ids.size(), products.size());
+            return products;
+        }
+    }
+
+    // Products with given name and date between from and to inclusive
+    List<Product> loadByNameAndDateRange(String name, int fromEpochDay, int toEpochDay) {
+        try (QueryProfile.Stage stage = QueryProfile.begin(getFilename(), "date index")) {
+            ProductColumnStore columns = columns();
+            List<Product> products = new ArrayList<>();
+            int nameCode = columns.names().code(name);
+            if (nameCode == StringDictionary.ABSENT) {
+                stage.end(0, 0);
+                return products;
+            }
+            // Compare name codes in column, build only matching products
+            LongHashSet ids = dateIndex.range(fromEpochDay, toEpochDay);
+            ids.forEach(id -> {
+                int position = columns.position(id);
+                if (columns.nameCode(position) == nameCode)
+                    products.add(columns.materialize(position));
+            });
+            stage.end(ids.size(), products.size());
+            return products;
+        }
+    }
+
+    // Manufacturers with all products cheaper than price, including ones without products.
+    // Synchronized since refresh of stale maximums modifies index.
+    synchronized LongHashSet loadManufacturerIdsWherePriceLessThan(double price, ManufacturerTableHandler manufacturers) {
+        try (QueryProfile.Stage stage = QueryProfile.begin(getFilename(), "max price index")) {
+            ProductColumnStore columns = columns();
+            indexManufacturers(manufacturers);
+            maxPriceIndex.refresh(manufacturerId -> {
+                long[] productIds = manufacturerIndex.get(manufacturerId).toArray();
+                return Arrays.stream(productIds).mapToDouble(id -> columns.price(columns.position(id)));
+            });
+            LongHashSet result = maxPriceIndex.groupsWithMaxLessThan(price);
+            stage.end(result.size(), result.size());
+            return result;
+        }
+    }
+
+    // Adds all manufacturers to maxPriceIndex after either table rebuilt its indexes,
+    // otherwise they are kept up to date by manufacturerAdded and manufacturerRemoved
+    private void indexManufacturers(ManufacturerTableHandler manufacturers) {
+        RowStore<Manufacturer> rows = manufacturers.rows();
+        if (isIndexed(manufacturers))
+            return;
+        maxPriceIndex.removeGroups();
+        for (long id : rows.ids())
+            maxPriceIndex.addGroup(id);
+        indexedGeneration = generation();
+        indexedManufacturerGeneration = manufacturers.generation();
+    }
+
+    private boolean isIndexed(ManufacturerTableHandler manufacturers) {
+        return indexedGeneration == generation() && indexedManufacturerGeneration == manufacturers.generation();
     }
+
+    synchronized void manufacturerAdded(ManufacturerTableHandler manufacturers, long manufacturerId) {
+        if (isIndexed(manufacturers))
+            maxPriceIndex.addGroup(manufacturerId);
+    }
+
+    synchronized void manufacturerRemoved(ManufacturerTableHandler manufacturers, long manufacturerId) {
+        if (isIndexed(manufacturers))
+            maxPriceIndex.removeGroup(manufacturerId);
+    }
+
+    // Products matching query, restricted to given manufacturers unless null. Planner
+    // picks access path with fewest estimated rows, remaining predicates are checked
+    // on columns, so only returned products are built.
+    List<Product> query(ProductQuery query, long[] manufacturerIds) {
+        ProductColumnStore columns = columns();
+        List<Product> products = new ArrayList<>();
+
+        int nameCode = StringDictionary.ABSENT;
+        if (query.getName() != null) {
+            nameCode = dictionary().code(query.getName());
+            // Name nobody has was never encoded
+            if (nameCode == StringDictionary.ABSENT) {
+                QueryProfile.begin(getFilename(), "unknown name").end(0, 0);
+                return products;
+            }
+        }
+        Filter filter = new Filter(query, manufacturerIds, nameCode);
+
+        AccessPath path = plan(query, manufacturerIds, columns);
+        try (QueryProfile.Stage stage = QueryProfile.begin(getFilename(), path.toString())) {
+            long[] examined = new long[1];
+            Comparator<Integer> comparator = comparator(query, columns);
+            // Bounded heap keeps first limit positions without sorting all matches
+            PriorityQueue<Integer> positions = new PriorityQueue<>(comparator.reversed());
+            IntConsumer visit = position -> {
+                examined[0]++;
+                if (!filter.test(columns, position))
+                    return;
+                positions.offer(position);
+                if (positions.size() > query.getLimit())
+                    positions.poll();
+            };
+            switch (path) {
+                case UNIQUE_NAME -> {
+                    Long id = nameIndex.get(new NameKey(nameCode, manufacturerIds[0]));
+                    if (id != null)
+                        visit.accept(columns.position(id));
+                }
+                case MANUFACTURER_INDEX -> {
+                    for (long manufacturerId : manufacturerIds)
+                        manufacturerIndex.get(manufacturerId).forEach(id -> visit.accept(columns.position(id)));
+                }
+                case DATE_INDEX -> dateIndex.range(query.getFromEpochDay(), query.getToEpochDay())
+                        .forEach(id -> visit.accept(columns.position(id)));
+                case ID_INDEX -> {
+                    // Ids come in result order, so first limit matches are the result
+                    long afterId = query.getAfterId() == null ? Long.MIN_VALUE : query.getAfterId();
+                    idIndex().forEachAfter(afterId, id -> {
+                        visit.accept(columns.position(id));
+                        return positions.size() < query.getLimit();
+                    });
+                }
+                case FULL_SCAN -> {
+                    // Positions are visited in table order, so limit without order can stop early
+                    boolean ordered = query.getOrder() != ProductQuery.Order.NONE || query.isDescending();
+                    for (int position = 0; position < columns.positionLimit(); position++) {
+                        if (!ordered && positions.size() >= query.getLimit())
+                            break;
+                        if (columns.isLive(position))
+                            visit.accept(position);
+                    }
+                }
+            }
+
+            List<Integer> ordered = new ArrayList<>(positions);
+            ordered.sort(comparator);
+            for (int position : ordered)
+                products.add(columns.materialize(position));
+            stage.end(examined[0], products.size());
+            return products;
+        }
+    }
+
+    // Access path with fewest estimated rows
+    private AccessPath plan(ProductQuery query, long[] manufacturerIds, ProductColumnStore columns) {
+        if (query.getName() != null && manufacturerIds != null && manufacturerIds.length == 1)
+            return AccessPath.UNIQUE_NAME;
+
+        AccessPath path = AccessPath.FULL_SCAN;
+        long estimate = columns.size();
+        if (manufacturerIds != null) {
+            long rows = 0;
+            for (long manufacturerId : manufacturerIds)
+                rows += manufacturerIndex.get(manufacturerId).size();
+            if (rows < estimate) {
+                path = AccessPath.MANUFACTURER_INDEX;
+                estimate = rows;
+            }
+        }
+        if (query.getFromEpochDay() != null) {
+            long rows = dateIndex.count(query.getFromEpochDay(), query.getToEpochDay());
+            if (rows < estimate) {
+                path = AccessPath.DATE_INDEX;
+                estimate = rows;
+            }
+        }
+        if (query.getOrder() == ProductQuery.Order.ID && !query.isDescending()) {
+            // Id order stops after limit matches, more rows are skipped the fewer rows match
+            double rows = (double) query.getLimit() * columns.size() / Math.max(1, estimate);
+            if (path == AccessPath.FULL_SCAN || rows < estimate)
+                path = AccessPath.ID_INDEX;
+        }
+        return path;
+    }
+
+    // Ordered by query order, ties and unordered queries in table order
+    private static Comparator<Integer> comparator(ProductQuery query, ProductColumnStore columns) {
+        Comparator<Integer> comparator = switch (query.getOrder()) {
+            case NONE -> Comparator.comparingInt(position -> 0);
+            case ID -> Comparator.comparingLong(columns::id);
+            case NAME -> Comparator.comparing(position -> columns.names().decode(columns.nameCode(position)),
+                    Comparator.nullsFirst(Comparator.naturalOrder()));
+            case DATE -> Comparator.comparingInt(columns::epochDay);
+            case PRICE -> Comparator.comparingDouble(columns::price);
+        };
+        comparator = comparator.thenComparingInt(position -> position);
+        return query.isDescending() ? comparator.reversed() : comparator;
+    }
+
+    // Predicates of query checked on columns
+    private static class Filter {
+
+        private final LongHashSet manufacturerIds;
+        private final int nameCode;
+        private final ProductQuery query;
+
+        private Filter(ProductQuery query, long[] manufacturerIds, int nameCode) {
+            this.query = query;
+            this.nameCode = nameCode;
+            if (manufacturerIds == null) {
+                this.manufacturerIds = null;
+            } else {
+                this.manufacturerIds = new LongHashSet(manufacturerIds.length);
+                for (long manufacturerId : manufacturerIds)
+                    this.manufacturerIds.add(manufacturerId);
+            }
+        }
+
+        private boolean test(ProductColumnStore columns, int position) {
+            if (query.getAfterId() != null && columns.id(position) <= query.getAfterId())
+                return false;
+            if (manufacturerIds != null && !manufacturerIds.contains(columns.manufacturerId(position)))
+                return false;
+            if (query.getName() != null && columns.nameCode(position) != nameCode)
+                return false;
+            if (query.getFromEpochDay() != null) {
+                int epochDay = columns.epochDay(position);
+                if (epochDay < query.getFromEpochDay() || epochDay > query.getToEpochDay())
+                    return false;
+            }
+            if (query.getMinPrice() != null) {
+                double price = columns.price(position);
+                return price >= query.getMinPrice() && price <= query.getMaxPrice();
+            }
+            return true;
+        }
+    }
+
+    // Key of product name unique per manufacturer
+    private record NameKey(int nameCode, long manufacturerId) {}
 }
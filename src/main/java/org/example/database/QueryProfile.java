@@ -0,0 +1,139 @@
+package org.example.database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Stages of queries run by DatabaseHandler.explain, recorded by tables on same
+// thread. Stages nest, such as file load inside index scan which triggered it.
+public class QueryProfile {
+
+    private static final ThreadLocal<QueryProfile> CURRENT = new ThreadLocal<>();
+    // Handed out when nothing is explained, ignores all calls since it is shared
+    private static final Stage NONE = new Stage(null, null, null, 0);
+
+    private final List<Stage> stages = new ArrayList<>();
+    private int depth;
+
+    static QueryProfile start() {
+        QueryProfile profile = new QueryProfile();
+        CURRENT.set(profile);
+        return profile;
+    }
+
+    static void stop() {
+        CURRENT.remove();
+    }
+
+    // Stage of profile of current thread, closed by caller even if query fails
+    static Stage begin(String table, String operation) {
+        QueryProfile profile = CURRENT.get();
+        if (profile == null)
+            return NONE;
+        Stage stage = new Stage(profile, table, operation, profile.depth++);
+        profile.stages.add(stage);
+        return stage;
+    }
+
+    public List<Stage> getStages() {
+        return Collections.unmodifiableList(stages);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(String.format("%-50s %9s %9s %6s %10s %9s%n",
+                "stage", "examined", "returned", "files", "bytes", "ms"));
+        long nanos = 0;
+        for (Stage stage : stages) {
+            String name = "  ".repeat(stage.depth) + stage.table + ": " + stage.operation;
+            builder.append(String.format("%-50s %9d %9d %6d %10d %9.3f%n", name, stage.rowsExamined,
+                    stage.rowsReturned, stage.filesLoaded, stage.bytesParsed, stage.nanos / 1e6));
+            if (stage.depth == 0)
+                nanos += stage.nanos;
+        }
+        builder.append(String.format("total %.3f ms", nanos / 1e6));
+        return builder.toString();
+    }
+
+    public static class Stage implements AutoCloseable {
+
+        private final QueryProfile profile;
+        private final String table;
+        // Access path or other operation of stage
+        private final String operation;
+        private final int depth;
+        private final long start = System.nanoTime();
+        private long rowsExamined;
+        private long rowsReturned;
+        private long filesLoaded;
+        private long bytesParsed;
+        private long nanos;
+        private boolean ended;
+
+        private Stage(QueryProfile profile, String table, String operation, int depth) {
+            this.profile = profile;
+            this.table = table;
+            this.operation = operation;
+            this.depth = depth;
+        }
+
+        Stage files(long filesLoaded, long bytesParsed) {
+            if (profile == null)
+                return this;
+            this.filesLoaded += filesLoaded;
+            this.bytesParsed += bytesParsed;
+            return this;
+        }
+
+        // Ends stage with its row counts, stage closed afterwards stays as is
+        void end(long rowsExamined, long rowsReturned) {
+            if (profile == null || ended)
+                return;
+            this.rowsExamined = rowsExamined;
+            this.rowsReturned = rowsReturned;
+            close();
+        }
+
+        // Ends stage without row counts if it was not ended, such as by failure
+        @Override
+        public void close() {
+            if (profile == null || ended)
+                return;
+            ended = true;
+            nanos = System.nanoTime() - start;
+            profile.depth--;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public long getRowsExamined() {
+            return rowsExamined;
+        }
+
+        public long getRowsReturned() {
+            return rowsReturned;
+        }
+
+        public long getFilesLoaded() {
+            return filesLoaded;
+        }
+
+        public long getBytesParsed() {
+            return bytesParsed;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.example.database;
+
+import java.util.List;
+
+// Resident rows of table indexed by id. Iteration gives read only view of rows.
+public interface RowStore<T> extends Iterable<T> {
+
+    int size();
+
+    boolean contains(long id);
+
+    // Detached entity safe to modify, null if missing
+    T load(long id);
+
+    // Detached entities in insertion order
+    List<T> loadAll();
+
+    // Store takes ownership of entity, returns replaced row
+    T put(T entity);
+
+    // Returns removed row or null
+    T remove(long id);
+
+    long[] ids();
+
+    // Read only rows as of now, which later changes of this store don't affect.
+    // Both share data until this store changes next, it copies data first then.
+    RowStore<T> freeze();
+}
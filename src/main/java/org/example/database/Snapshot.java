@@ -0,0 +1,105 @@
+package org.example.database;
+
+import org.example.database.index.LongHashMap;
+import org.example.entity.Manufacturer;
+import org.example.entity.Product;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Immutable view of both tables at one version. Reads don't take any lock, so
+// long reports don't hold up writers, and later writes are not visible.
+// Rows are frozen stores sharing data with tables until their next change, and
+// entities are handed out as copies, so callers can't change the snapshot.
+// Superseded snapshots are garbage once no reader references them.
+public class Snapshot {
+
+    private final long manufacturerVersion;
+    private final long productVersion;
+    private final RowStore<Manufacturer> manufacturers;
+    private final RowStore<Product> products;
+
+    Snapshot(RowStore<Manufacturer> manufacturers, long manufacturerVersion,
+             RowStore<Product> products, long productVersion) {
+        this.manufacturers = manufacturers;
+        this.manufacturerVersion = manufacturerVersion;
+        this.products = products;
+        this.productVersion = productVersion;
+    }
+
+    boolean isAt(long manufacturerVersion, long productVersion) {
+        return this.manufacturerVersion == manufacturerVersion && this.productVersion == productVersion;
+    }
+
+    // Frozen rows of table unchanged since this snapshot are reused by next one,
+    // so table doesn't copy its data again on next change
+    RowStore<Manufacturer> manufacturersAt(long version) {
+        return manufacturerVersion == version ? manufacturers : null;
+    }
+
+    RowStore<Product> productsAt(long version) {
+        return productVersion == version ? products : null;
+    }
+
+    public Manufacturer readManufacturerById(long id) {
+        return manufacturers.load(id);
+    }
+
+    public List<Manufacturer> readAllManufacturers() {
+        return manufacturers.loadAll();
+    }
+
+    public List<Product> readAllProducts() {
+        return products.loadAll();
+    }
+
+    // Manufacturer <-> Product | One <-> Many
+    public Map<Manufacturer, List<Product>> readAllManufacturerProductsMap() {
+        List<Manufacturer> manufacturerList = manufacturers.loadAll();
+        // Manufacturer id -> its products, in table order
+        LongHashMap<List<Product>> productsByManufacturer = new LongHashMap<>(manufacturerList.size());
+        for (Product product : products.loadAll()) {
+            List<Product> group = productsByManufacturer.get(product.getManufacturerId());
+            if (group == null) {
+                group = new ArrayList<>();
+                productsByManufacturer.put(product.getManufacturerId(), group);
+            }
+            group.add(product);
+        }
+
+        Map<Manufacturer, List<Product>> map = new LinkedHashMap<>();
+        for (Manufacturer manufacturer : manufacturerList) {
+            List<Product> group = productsByManufacturer.get(manufacturer.getId());
+            map.put(manufacturer, group == null ? new ArrayList<>() : group);
+        }
+        return map;
+    }
+
+    // Product <-> Manufacturer | One <-> One
+    public Map<Product, Manufacturer> readAllProductManufacturerMap(OrphanPolicy orphanPolicy) {
+        Map<Product, Manufacturer> map = new LinkedHashMap<>();
+        // Products of one manufacturer share copy of it, like in joins of handler
+        LongHashMap<Manufacturer> copies = new LongHashMap<>(manufacturers.size());
+        for (Product product : products.loadAll()) {
+            Manufacturer manufacturer = copies.get(product.getManufacturerId());
+            if (manufacturer == null) {
+                manufacturer = manufacturers.load(product.getManufacturerId());
+                if (manufacturer != null)
+                    copies.put(manufacturer.getId(), manufacturer);
+            }
+            if (manufacturer == null) {
+                switch (orphanPolicy) {
+                    case SKIP -> {
+                        continue;
+                    }
+                    case FAIL -> throw new IllegalStateException(
+                            "Manufacturer " + product.getManufacturerId() + " of " + product + " doesn't exist");
+                }
+            }
+            map.put(product, manufacturer);
+        }
+        return map;
+    }
+}
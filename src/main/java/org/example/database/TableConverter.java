@@ -0,0 +1,65 @@
+package org.example.database;
+
+import org.example.entity.Entity;
+import org.example.factory.FromJSONFactory;
+import org.example.factory.ManufacturerFactory;
+import org.example.factory.ProductFactory;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// Migrates table files between formats, log files must be compacted first
+public class TableConverter {
+
+    // Fails rather than dropping rows, target is replaced only by complete table
+    public static <T extends Entity> void convert(String source, TableFormat sourceFormat,
+                                                  String target, TableFormat targetFormat,
+                                                  FromJSONFactory<T> factory) throws IOException {
+        if (Files.exists(Paths.get(source + ".log")))
+            throw new IOException("Table " + source + " has log records, compact it first");
+
+        List<T> entities;
+        try (FileChannel channel = FileChannel.open(Paths.get(source), StandardOpenOption.READ)) {
+            entities = sourceFormat.read(channel, factory);
+        }
+        List<String> invalidRows = factory.takeInvalidRows();
+        if (!invalidRows.isEmpty())
+            throw new IOException("Table " + source + " has invalid rows: " + String.join("; ", invalidRows));
+
+        Path path = Paths.get(target);
+        Path temporary = Paths.get(target + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                targetFormat.write(Channels.newOutputStream(channel), entities, entities.size());
+                channel.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    // Usage: <manufacturers|products> <source> <json|binary> <target> <json|binary>
+    public static void main(String[] args) throws IOException {
+        if (args.length != 5) {
+            System.out.println("Usage: <manufacturers|products> <source> <json|binary> <target> <json|binary>");
+            return;
+        }
+
+        FromJSONFactory<? extends Entity> factory = switch (args[0].toLowerCase()) {
+            case "manufacturers" -> new ManufacturerFactory();
+            case "products" -> new ProductFactory();
+            default -> throw new IllegalArgumentException("Unknown table: " + args[0]);
+        };
+        convert(args[1], TableFormat.of(args[2]), args[3], TableFormat.of(args[4]), factory);
+    }
+}
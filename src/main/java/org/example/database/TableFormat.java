@@ -0,0 +1,38 @@
+package org.example.database;
+
+import org.example.entity.Entity;
+import org.example.factory.FromJSONFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+
+// On disk encoding of table file
+public interface TableFormat {
+
+    TableFormat JSON = new JsonTableFormat();
+    TableFormat BINARY = new BinaryTableFormat();
+
+    static TableFormat of(String name) {
+        return switch (name.toLowerCase()) {
+            case "json" -> JSON;
+            case "binary" -> BINARY;
+            default -> throw new IllegalArgumentException("Unknown table format: " + name);
+        };
+    }
+
+    <T extends Entity> List<T> read(ReadableByteChannel channel, FromJSONFactory<T> factory) throws IOException;
+
+    // Reads from buffer holding whole file, such as mapped file
+    <T extends Entity> List<T> read(ByteBuffer buffer, FromJSONFactory<T> factory) throws IOException;
+
+    // Parses parts of buffer concurrently, entities are returned in file order.
+    // Formats which can't be split are read sequentially.
+    default <T extends Entity> List<T> readParallel(ByteBuffer buffer, FromJSONFactory<T> factory) throws IOException {
+        return read(buffer, factory);
+    }
+
+    <T extends Entity> void write(OutputStream out, Iterable<T> entities, int count) throws IOException;
+}
@@ -1,65 +1,674 @@
 package org.example.database;
 
-import org.example.entity.JSONable;
+import org.example.binary.StringDictionary;
+import org.example.database.index.LongHashSet;
+import org.example.database.index.SortedIdIndex;
+import org.example.database.index.TableIndex;
+import org.example.entity.Entity;
 import org.example.factory.FromJSONFactory;
-import org.json.JSONArray;
+import org.example.factory.InvalidRowException;
+import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
-public abstract class TableHandler<T extends JSONable> {
+public abstract class TableHandler<T extends Entity> {
+
+    // Log record prefixes
+    private static final String PUT = "P ";
+    private static final String DELETE = "D ";
+    // Strings dictionary may gain over twice its size at last rebuild before it is rebuilt again
+    private static final int MIN_DICTIONARY_GROWTH = 1024;
 
     private final String filename;
+    private final String logFilename;
     private final FromJSONFactory<T> factory;
+    private final TableOptions options;
+    // Guards table and log files against other processes
+    private final TableLock fileLock;
+    private final IdAllocator idAllocator;
+
+    // Resident cache indexed by id and state of the files it was loaded from
+    private RowStore<T> cache;
+    private TableState cacheState;
+    // Secondary indexes, rebuilt together with rows
+    private final List<TableIndex<T>> indexes = new ArrayList<>();
+    // Ids in ascending order, for pages continuing after id
+    private final SortedIdIndex<T> idIndex = new SortedIdIndex<>(Entity::getId);
+    // Rows of files which couldn't be loaded, table file isn't rewritten while
+    // there are any, since that would drop them
+    private List<String> invalidRows = List.of();
+    // Records in log file since last compaction
+    private int logRecords;
+    private boolean compactionScheduled;
+    // Asks owner to run compact() while nobody else uses table, logs are only
+    // compacted on demand without it
+    private Runnable compactionRequest;
+    // Compaction was skipped while table was pinned
+    private boolean compactionDeferred;
+    // Size of dictionary when it was last rebuilt
+    private int dictionarySize;
+    // Concurrent readers using cache, it is not reloaded while pinned
+    private int pins;
+    // Incremented on every change of rows, including reloads
+    private long version;
+    // Incremented when indexes are rebuilt, changes in between are made row by row
+    private long generation;
 
     public TableHandler(String filename, FromJSONFactory<T> factory) {
+        this(filename, factory, false);
+    }
+
+    public TableHandler(String filename, FromJSONFactory<T> factory, boolean resident) {
+        this(filename, factory, new TableOptions.Builder().setResident(resident).build());
+    }
+
+    public TableHandler(String filename, FromJSONFactory<T> factory, TableOptions options) {
         this.filename = filename;
+        this.logFilename = filename + ".log";
         this.factory = factory;
+        this.options = options;
+        this.fileLock = TableLock.of(filename);
+        this.idAllocator = new IdAllocator(filename, fileLock);
+        indexes.add(idIndex);
     }
 
     List<T> loadAll() {
-        return factory.createAll(loadFile());
+        try (QueryProfile.Stage stage = QueryProfile.begin(filename, "full scan")) {
+            RowStore<T> rows = rows();
+            // Callers modify returned entities, so hand out copies
+            List<T> entities = rows.loadAll();
+            stage.end(rows.size(), entities.size());
+            return entities;
+        }
+    }
+
+    T loadById(long id) {
+        try (QueryProfile.Stage stage = QueryProfile.begin(filename, "primary key")) {
+            T entity = rows().load(id);
+            stage.end(1, entity == null ? 0 : 1);
+            return entity;
+        }
+    }
+
+    List<T> loadByIds(LongHashSet ids) {
+        try (QueryProfile.Stage stage = QueryProfile.begin(filename, "primary key")) {
+            List<T> entities = loadAll(rows(), ids);
+            stage.end(ids.size(), entities.size());
+            return entities;
+        }
+    }
+
+    long[] loadIds() {
+        try (QueryProfile.Stage stage = QueryProfile.begin(filename, "id scan")) {
+            long[] ids = rows().ids();
+            stage.end(ids.length, ids.length);
+            return ids;
+        }
+    }
+
+    // Up to limit rows with smallest ids greater than afterId, ordered by id
+    List<T> loadPage(long afterId, int limit) {
+        try (QueryProfile.Stage stage = QueryProfile.begin(filename, "id page")) {
+            RowStore<T> rows = rows();
+            List<T> entities = new ArrayList<>();
+            // Seeks to afterId, only ids of page are visited
+            idIndex.forEachAfter(afterId, id -> {
+                if (entities.size() >= limit)
+                    return false;
+                entities.add(rows.load(id));
+                return true;
+            });
+            stage.end(entities.size(), entities.size());
+            return entities;
+        }
+    }
+
+    boolean exists(long id) {
+        return rows().contains(id);
+    }
+
+    // Next id unused by rows, skips ids of rows created with other ids. Rows are
+    // loaded once by caller, so batches don't reload table for every id.
+    long nextId(RowStore<T> rows) {
+        long id;
+        do {
+            id = idAllocator.next();
+        } while (rows.contains(id));
+        return id;
+    }
+
+    // Copies of rows with given ids, missing ids are skipped
+    protected List<T> loadAll(RowStore<T> rows, LongHashSet ids) {
+        List<T> entities = new ArrayList<>(ids.size());
+        ids.forEach(id -> {
+            T entity = rows.load(id);
+            if (entity != null)
+                entities.add(entity);
+        });
+        return entities;
+    }
+
+    // Writes hold exclusive file lock from reading rows to saving them,
+    // so changes of other processes are reloaded first and never overwritten.
+    // Pinned tables are never written, see writableRows.
+    synchronized void insert(T entity) {
+        fileLock.exclusive(() -> {
+            RowStore<T> rows = writableRows();
+            T copy = factory.copy(entity);
+            putRow(rows, copy);
+            if (options.isLogged())
+                appendLog(PUT + copy.toJSON() + "\n", 1);
+            else
+                saveRows(rows);
+        });
+    }
+
+    // Single write for all entities
+    synchronized void insertAll(List<T> entities) {
+        if (entities.isEmpty())
+            return;
+        fileLock.exclusive(() -> {
+            RowStore<T> rows = writableRows();
+            StringBuilder records = new StringBuilder();
+            for (T entity : entities) {
+                T copy = factory.copy(entity);
+                putRow(rows, copy);
+                if (options.isLogged())
+                    records.append(PUT).append(copy.toJSON()).append('\n');
+            }
+            if (options.isLogged())
+                appendLog(records.toString(), entities.size());
+            else
+                saveRows(rows);
+        });
+    }
+
+    // Replaces entity with same id, does nothing if it doesn't exist
+    synchronized void update(T entity) {
+        fileLock.exclusive(() -> {
+            RowStore<T> rows = writableRows();
+            if (!rows.contains(entity.getId()))
+                return;
+            T copy = factory.copy(entity);
+            putRow(rows, copy);
+            if (options.isLogged())
+                appendLog(PUT + copy.toJSON() + "\n", 1);
+            else
+                saveRows(rows);
+        });
+    }
+
+    synchronized void delete(long id) {
+        deleteAll(new long[] {id});
+    }
+
+    // Single write for all ids, missing ids are skipped
+    synchronized void deleteAll(long[] ids) {
+        fileLock.exclusive(() -> {
+            RowStore<T> rows = writableRows();
+            StringBuilder records = new StringBuilder();
+            int count = 0;
+            for (long id : ids) {
+                if (removeRow(rows, id) == null)
+                    continue;
+                if (options.isLogged())
+                    records.append(DELETE).append(id).append('\n');
+                count++;
+            }
+            if (count == 0)
+                return;
+            if (options.isLogged())
+                appendLog(records.toString(), count);
+            else
+                saveRows(rows);
+        });
     }
 
     // Unconditional save, doesn't contain logic
-    void saveAll(List<T> entities) {;
-        JSONArray jsonArray = new JSONArray();
-        for (T t : entities) {
-            jsonArray.put(new JSONObject(t.toJSON()));
+    synchronized void saveAll(List<T> entities) {
+        List<T> copies = new ArrayList<>(entities.size());
+        for (T t : entities)
+            copies.add(factory.copy(t));
+        requireUnpinned();
+        fileLock.exclusive(() -> {
+            // Replaces whole table, invalid rows included
+            invalidRows = List.of();
+            saveRows(indexRows(copies));
+        });
+    }
+
+    // Rewrites table without rows which couldn't be loaded, so it can be written
+    // again. Returns messages naming dropped rows.
+    synchronized List<String> dropInvalidRows() {
+        requireUnpinned();
+        return fileLock.exclusive(() -> {
+            RowStore<T> rows = writableRows();
+            List<String> dropped = invalidRows;
+            if (dropped.isEmpty())
+                return dropped;
+            invalidRows = List.of();
+            saveRows(rows);
+            return dropped;
+        });
+    }
+
+    // Folds log into table file. Tables pinned by readers are compacted once unpinned,
+    // since pinned cache may be stale and reloading it would change rows under readers.
+    synchronized void compact() {
+        compactionScheduled = false;
+        if (!options.isLogged())
+            return;
+        if (pins > 0) {
+            compactionDeferred = true;
+            return;
         }
-        writeFile(jsonArray.toString());
+        fileLock.exclusive(() -> {
+            RowStore<T> rows = writableRows();
+            // Log stays until invalid rows are fixed
+            if (invalidRows.isEmpty() && new File(logFilename).exists())
+                saveRows(rows);
+        });
     }
 
-    protected String loadFile() {
+    // Pins current resident cache, so rows and indexes stay unchanged for concurrent
+    // readers. Fails if table is not resident or its files were changed.
+    synchronized boolean pin() {
+        if (!options.isResident() || cache == null)
+            return false;
+        TableState state = readTableState();
+        if (state.table() == null || !state.equals(cacheState))
+            return false;
+        pins++;
+        return true;
+    }
 
-        if (!new File(this.filename).exists())
-            writeFile("[]");
+    synchronized void unpin() {
+        pins--;
+        if (pins == 0 && compactionDeferred) {
+            compactionDeferred = false;
+            scheduleCompaction();
+        }
+    }
 
-        Path path = Paths.get(this.filename);
+    // Rows of current version for snapshots, without copying them. Resident cache
+    // copies its data on next change instead.
+    synchronized RowStore<T> frozenRows() {
+        return rows().freeze();
+    }
+
+    // Compaction rebuilds rows, indexes and dictionary, which owner reads without
+    // monitor of table, so owner runs it under its own lock
+    synchronized void setCompactionRequest(Runnable compactionRequest) {
+        this.compactionRequest = compactionRequest;
+    }
+
+    synchronized long version() {
+        return version;
+    }
+
+    // Generation of rows last returned by rows(), doesn't reload
+    synchronized long generation() {
+        return generation;
+    }
+
+    // Messages naming rows skipped by last load
+    synchronized List<String> loadInvalidRows() {
+        rows();
+        return invalidRows;
+    }
+
+    protected String getFilename() {
+        return filename;
+    }
+
+    // Ids of rows last returned by rows() in ascending order
+    protected SortedIdIndex<T> idIndex() {
+        return idIndex;
+    }
+
+    // Must be called from subclass constructor
+    protected void addIndex(TableIndex<T> index) {
+        indexes.add(index);
+    }
+
+    // Rows indexed by id for reading. Pinned cache is returned as is to concurrent
+    // readers, even if files were changed meanwhile.
+    protected synchronized RowStore<T> rows() {
+        if (options.isResident() && pins > 0)
+            return cache;
+        return currentRows();
+    }
+
+    // Rows for change under exclusive file lock, always matching files. Writers
+    // exclude pinning readers, rows they pinned are never changed in place.
+    private RowStore<T> writableRows() {
+        requireUnpinned();
+        return currentRows();
+    }
+
+    private void requireUnpinned() {
+        if (pins > 0)
+            throw new IllegalStateException("Table " + filename + " is pinned by readers");
+    }
+
+    // Resident tables reload only if files were changed by someone else
+    private RowStore<T> currentRows() {
+        if (!options.isResident())
+            return lockedLoad(this::loadRows);
+
+        TableState state = readTableState();
+        if (cache == null || state.table() == null || !state.equals(cacheState)) {
+            lockedLoad(() -> {
+                // State read under lock matches files being loaded
+                cacheState = readTableState();
+                cache = loadRows();
+                return cache;
+            });
+        }
+        return cache;
+    }
+
+    // Missing table file is created by load, which needs exclusive lock
+    private RowStore<T> lockedLoad(Supplier<RowStore<T>> load) {
+        if (new File(filename).exists())
+            return fileLock.shared(load);
+        return fileLock.exclusive(load);
+    }
+
+    // Table file followed by replay of log
+    private RowStore<T> loadRows() {
+        try (QueryProfile.Stage stage = QueryProfile.begin(filename, "load file")) {
+            // Strings of rows no longer in files are dropped, rows and indexes are rebuilt anyway
+            factory.resetDictionary();
+            List<T> entities = loadFile();
+            List<String> invalid = new ArrayList<>(factory.takeInvalidRows());
+            RowStore<T> rows = indexRows(entities);
+            stage.files(1, new File(filename).length());
+            logRecords = 0;
+            if (options.isLogged() && new File(logFilename).exists()) {
+                for (String record : readLog()) {
+                    try {
+                        replay(rows, record);
+                    } catch (InvalidRowException e) {
+                        invalid.add(e.getMessage());
+                    } catch (JSONException | NumberFormatException e) {
+                        throw new UncheckedIOException(new IOException(
+                                "Corrupted record " + (logRecords + 1) + " of " + logFilename, e));
+                    }
+                    logRecords++;
+                }
+                stage.files(1, new File(logFilename).length());
+            }
+            invalidRows = invalid;
+            dictionarySize = dictionarySize();
+            stage.end(entities.size() + logRecords, rows.size());
+            return rows;
+        }
+    }
+
+    // Complete records of log. Every record ends with new line, text after last one
+    // is record cut short by crash during append and is skipped.
+    private List<String> readLog() {
         try {
-            byte[] bytes = Files.readAllBytes(path);
-            return new String(bytes);
+            String log = Files.readString(Paths.get(logFilename), StandardCharsets.UTF_8);
+            return log.substring(0, log.lastIndexOf('\n') + 1).lines().toList();
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void replay(RowStore<T> rows, String record) {
+        if (record.startsWith(PUT))
+            putRow(rows, factory.create(new JSONObject(record.substring(PUT.length()))));
+        else if (record.startsWith(DELETE))
+            removeRow(rows, Long.parseLong(record.substring(DELETE.length())));
+        else
+            throw new JSONException("Unknown log record type");
+    }
+
+    // Records must end with new line. They are forced to disk before returning, as
+    // change is acknowledged once it is in log.
+    private void appendLog(String records, int count) {
+        Path path = Paths.get(logFilename);
+        try {
+            if (Files.exists(path))
+                truncateTornRecord(path);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer buffer = ByteBuffer.wrap(records.getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+                channel.force(true);
+            }
+        } catch (IOException e) {
+            discardCache();
+            throw new UncheckedIOException(e);
+        }
+        if (options.isResident())
+            cacheState = readTableState();
+
+        logRecords += count;
+        if (logRecords >= options.getCompactionThreshold())
+            scheduleCompaction();
+    }
+
+    private void scheduleCompaction() {
+        if (compactionScheduled || compactionRequest == null)
+            return;
+        compactionScheduled = true;
+        compactionRequest.run();
+    }
+
+    // Drops record cut short by crash, which would otherwise be followed by new ones
+    private static void truncateTornRecord(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            long end = channel.size();
+            while (end > 0) {
+                last.clear();
+                channel.read(last, end - 1);
+                if (last.get(0) == '\n')
+                    break;
+                end--;
+            }
+            if (end < channel.size())
+                channel.truncate(end);
+        }
+    }
+
+    private void saveRows(RowStore<T> rows) {
+        if (!invalidRows.isEmpty()) {
+            discardCache();
+            throw new IllegalStateException("Rewriting " + filename + " would drop invalid rows, fix or drop them first: "
+                    + invalidRows);
+        }
+        rows = rebuildDictionary(rows);
+        try {
+            writeRows(rows);
+        } catch (UncheckedIOException e) {
+            discardCache();
+            throw e;
+        }
+
+        // Table file now contains everything from log. Crash before log is deleted
+        // replays it over new table again, which changes nothing.
+        if (options.isLogged()) {
+            try {
+                Files.deleteIfExists(Paths.get(logFilename));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            logRecords = 0;
+        }
+
+        if (options.isResident()) {
+            cache = rows;
+            cacheState = readTableState();
+        }
+    }
+
+    // Strings of deleted and renamed rows stay in dictionary, which is rebuilt from
+    // rows once it has doubled since last rebuild. Rebuilds cost O(rows) and are
+    // amortized over as many new strings, strings no longer used are bounded.
+    private RowStore<T> rebuildDictionary(RowStore<T> rows) {
+        if (dictionarySize() <= 2 * dictionarySize + MIN_DICTIONARY_GROWTH)
+            return rows;
+        List<T> entities = rows.loadAll();
+        factory.resetDictionary();
+        rows = indexRows(entities);
+        dictionarySize = dictionarySize();
+        return rows;
+    }
+
+    private int dictionarySize() {
+        return dictionary() == null ? 0 : dictionary().size();
+    }
+
+    // Rows and indexes were changed in place but not saved, so cache is reloaded
+    // from unchanged files on next access
+    private void discardCache() {
+        version++;
+        cache = null;
+        cacheState = null;
+    }
+
+    private void putRow(RowStore<T> rows, T entity) {
+        version++;
+        T previous = rows.put(entity);
+        for (TableIndex<T> index : indexes) {
+            if (previous != null)
+                index.remove(previous);
+            index.add(entity);
+        }
+    }
+
+    private T removeRow(RowStore<T> rows, long id) {
+        T removed = rows.remove(id);
+        if (removed == null)
             return null;
+        version++;
+        for (TableIndex<T> index : indexes)
+            index.remove(removed);
+        return removed;
+    }
+
+    private RowStore<T> indexRows(List<T> entities) {
+        version++;
+        generation++;
+        RowStore<T> rows = createStore(entities.size());
+        for (TableIndex<T> index : indexes)
+            index.clear();
+        for (T t : entities)
+            putRow(rows, t);
+        return rows;
+    }
+
+    // Strings of current rows and indexes, replaced by reloads and rebuilds.
+    // Codes are only valid for rows and indexes built with same dictionary.
+    protected StringDictionary dictionary() {
+        return factory.getDictionary();
+    }
+
+    // Row storage of resident table, tables may provide specialized stores
+    protected RowStore<T> createStore(int expectedSize) {
+        return new ObjectRowStore<>(factory, expectedSize);
+    }
+
+    private TableState readTableState() {
+        return new TableState(readFileState(filename), options.isLogged() ? readFileState(logFilename) : null);
+    }
+
+    private static FileState readFileState(String filename) {
+        try {
+            BasicFileAttributes attributes
+                    = Files.readAttributes(Paths.get(filename), BasicFileAttributes.class);
+            return new FileState(attributes.fileKey(), attributes.size(), attributes.lastModifiedTime().toMillis());
+        } catch (IOException e) {
+            // Missing file
+            return null;
+        }
+    }
+
+    // Parses table file incrementally, without reading it into memory first
+    protected List<T> loadFile() {
+
+        if (!new File(this.filename).exists())
+            writeRows(createStore(0));
+
+        Path path = Paths.get(this.filename);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            boolean parallel = size >= options.getParallelThreshold();
+            // Buffers are limited to 2GB, larger files are read through channel
+            if (size <= Integer.MAX_VALUE && (options.isMapped() || parallel)) {
+                // Mapped file is parsed straight from page cache, without copy on heap
+                ByteBuffer buffer = options.isMapped()
+                        ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+                        : readFully(channel, (int) size);
+                return parallel
+                        ? options.getFormat().readParallel(buffer, factory)
+                        : options.getFormat().read(buffer, factory);
+            }
+            return options.getFormat().read(channel, factory);
+        } catch (IOException e) {
+            // Continuing with empty table would overwrite file on next save
+            throw new UncheckedIOException(e);
         }
     }
 
-    protected void writeFile(String content) {
+    // Whole file on heap, so chunks of it can be parsed concurrently
+    private static ByteBuffer readFully(FileChannel channel, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining())
+            if (channel.read(buffer) == -1)
+                break;
+        return buffer.flip();
+    }
+
+    // Serializes entities one by one straight into buffered temporary file, which
+    // then atomically replaces table file. Readers, including ones which mapped old
+    // file, never see partially written table. Table file is unchanged on failure.
+    // Temporary file is forced to disk first, so crash after move can't leave it empty.
+    protected void writeRows(RowStore<T> rows) {
+        Path path = Paths.get(this.filename);
+        Path temporary = Paths.get(this.filename + ".tmp");
         try {
-            BufferedWriter writer = new BufferedWriter(new FileWriter(this.filename));
-            writer.write(content);
-            writer.close();
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                options.getFormat().write(Channels.newOutputStream(channel), rows, rows.size());
+                channel.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
         } catch (IOException e) {
-            e.printStackTrace();
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+                // Overwritten by next save
+            }
+            throw new UncheckedIOException(e);
         }
     }
 
+    // Identifies file contents without reading them
+    private record FileState(Object key, long size, long modified) {}
+
+    // Missing files have null state
+    private record TableState(FileState table, FileState log) {}
+
 }
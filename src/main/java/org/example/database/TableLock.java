@@ -0,0 +1,78 @@
+package org.example.database;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// Shared or exclusive lock on sidecar <table>.lock file, held by every process
+// reading or writing the table. File locks belong to whole JVM, so threads of
+// one process are serialized by this object first. Reentrant, a thread holding
+// exclusive lock may take shared one but not the other way around.
+class TableLock {
+
+    // One instance per lock file, shared by all handlers of same table
+    private static final Map<Path, TableLock> LOCKS = new ConcurrentHashMap<>();
+
+    private final Path path;
+    private int depth;
+    private boolean shared;
+
+    private TableLock(Path path) {
+        this.path = path;
+    }
+
+    static TableLock of(String tableFilename) {
+        Path path = Paths.get(tableFilename + ".lock").toAbsolutePath().normalize();
+        return LOCKS.computeIfAbsent(path, TableLock::new);
+    }
+
+    <R> R shared(Supplier<R> action) {
+        return locked(true, action);
+    }
+
+    <R> R exclusive(Supplier<R> action) {
+        return locked(false, action);
+    }
+
+    void exclusive(Runnable action) {
+        locked(false, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private synchronized <R> R locked(boolean shared, Supplier<R> action) {
+        if (depth > 0) {
+            if (this.shared && !shared)
+                throw new IllegalStateException("Shared lock of " + path + " can't be upgraded");
+            depth++;
+            try {
+                return action.get();
+            } finally {
+                depth--;
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock(0, Long.MAX_VALUE, shared);
+            this.shared = shared;
+            depth = 1;
+            try {
+                return action.get();
+            } finally {
+                depth = 0;
+                lock.release();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.database;
+
+public class TableOptions {
+
+    // Keep parsed entities in memory between calls
+    private boolean resident;
+    // Append mutations to log file instead of rewriting table file
+    private boolean logged;
+    // Number of log records after which log is folded into table file
+    private int compactionThreshold = 1000;
+    // Encoding of table file, log is always JSON
+    private TableFormat format = TableFormat.JSON;
+    // Parse table file from memory mapped buffer instead of reading it
+    private boolean mapped;
+    // Table files of at least this many bytes are parsed in parallel
+    private long parallelThreshold = 16L * 1024 * 1024;
+
+    public TableOptions() {}
+
+    public static class Builder {
+
+        private final TableOptions options;
+
+        public Builder() {
+            options = new TableOptions();
+        }
+
+        public Builder setResident(boolean resident) {
+            options.resident = resident;
+            return this;
+        }
+
+        public Builder setLogged(boolean logged) {
+            options.logged = logged;
+            return this;
+        }
+
+        public Builder setCompactionThreshold(int compactionThreshold) {
+            options.compactionThreshold = compactionThreshold;
+            return this;
+        }
+
+        public Builder setFormat(TableFormat format) {
+            options.format = format;
+            return this;
+        }
+
+        // Mapped files can't be deleted or replaced on Windows until buffer is collected
+        public Builder setMapped(boolean mapped) {
+            options.mapped = mapped;
+            return this;
+        }
+
+        // Long.MAX_VALUE always parses sequentially
+        public Builder setParallelThreshold(long parallelThreshold) {
+            options.parallelThreshold = parallelThreshold;
+            return this;
+        }
+
+        public TableOptions build() {
+            return options;
+        }
+    }
+
+    public boolean isResident() {
+        return resident;
+    }
+
+    public boolean isLogged() {
+        return logged;
+    }
+
+    public int getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    public TableFormat getFormat() {
+        return format;
+    }
+
+    public boolean isMapped() {
+        return mapped;
+    }
+
+    public long getParallelThreshold() {
+        return parallelThreshold;
+    }
+}
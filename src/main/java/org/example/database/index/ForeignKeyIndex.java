@@ -0,0 +1,52 @@
+package org.example.database.index;
+
+import java.util.function.ToLongFunction;
+
+// Non unique index from referenced id to ids of referencing entities
+public class ForeignKeyIndex<T> implements TableIndex<T> {
+
+    private static final LongHashSet EMPTY = new LongHashSet();
+
+    private final ToLongFunction<T> foreignKey;
+    private final ToLongFunction<T> primaryKey;
+    private final LongHashMap<LongHashSet> index = new LongHashMap<>();
+
+    public ForeignKeyIndex(ToLongFunction<T> foreignKey, ToLongFunction<T> primaryKey) {
+        this.foreignKey = foreignKey;
+        this.primaryKey = primaryKey;
+    }
+
+    // Returned set must not be modified
+    public LongHashSet get(long key) {
+        LongHashSet ids = index.get(key);
+        return ids == null ? EMPTY : ids;
+    }
+
+    @Override
+    public void clear() {
+        index.clear();
+    }
+
+    @Override
+    public void add(T entity) {
+        long key = foreignKey.applyAsLong(entity);
+        LongHashSet ids = index.get(key);
+        if (ids == null) {
+            ids = new LongHashSet();
+            index.put(key, ids);
+        }
+        ids.add(primaryKey.applyAsLong(entity));
+    }
+
+    @Override
+    public void remove(T entity) {
+        long key = foreignKey.applyAsLong(entity);
+        LongHashSet ids = index.get(key);
+        if (ids == null)
+            return;
+        ids.remove(primaryKey.applyAsLong(entity));
+        // Don't keep empty sets for removed keys
+        if (ids.isEmpty())
+            index.remove(key);
+    }
+}
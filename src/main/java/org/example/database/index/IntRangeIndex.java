@@ -0,0 +1,62 @@
+package org.example.database.index;
+
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+// Sorted non unique index from int attribute to ids of entities, supports range scans
+public class IntRangeIndex<T> implements TableIndex<T> {
+
+    private final ToIntFunction<T> key;
+    private final ToLongFunction<T> primaryKey;
+    private final NavigableMap<Integer, LongHashSet> index = new TreeMap<>();
+
+    public IntRangeIndex(ToIntFunction<T> key, ToLongFunction<T> primaryKey) {
+        this.key = key;
+        this.primaryKey = primaryKey;
+    }
+
+    // Ids with key between from and to inclusive, ordered by key
+    public LongHashSet range(int from, int to) {
+        LongHashSet result = new LongHashSet();
+        if (from > to)
+            return result;
+        for (LongHashSet ids : index.subMap(from, true, to, true).values())
+            ids.forEach(result::add);
+        return result;
+    }
+
+    // Number of ids with key between from and to inclusive, without collecting them
+    public int count(int from, int to) {
+        if (from > to)
+            return 0;
+        int count = 0;
+        for (LongHashSet ids : index.subMap(from, true, to, true).values())
+            count += ids.size();
+        return count;
+    }
+
+    @Override
+    public void clear() {
+        index.clear();
+    }
+
+    @Override
+    public void add(T entity) {
+        index.computeIfAbsent(key.applyAsInt(entity), k -> new LongHashSet())
+                .add(primaryKey.applyAsLong(entity));
+    }
+
+    @Override
+    public void remove(T entity) {
+        int k = key.applyAsInt(entity);
+        LongHashSet ids = index.get(k);
+        if (ids == null)
+            return;
+        ids.remove(primaryKey.applyAsLong(entity));
+        // Don't keep empty sets for removed keys
+        if (ids.isEmpty())
+            index.remove(k);
+    }
+}
@@ -0,0 +1,207 @@
+package org.example.database.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// Hash map with primitive long keys, iterates values in insertion order.
+// Entries are stored densely, the hash table only holds entry positions.
+public class LongHashMap<V> implements Iterable<V> {
+
+    private static final int FREE = -1;
+    private static final int MIN_CAPACITY = 8;
+
+    // Slot -> entry position, open addressing with linear probing
+    private int[] table;
+    // Entries in insertion order, removed entries have null value
+    private long[] keys;
+    private Object[] values;
+    private int used;
+    private int size;
+
+    public LongHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongHashMap(int expectedSize) {
+        allocate(Math.max(MIN_CAPACITY, expectedSize));
+    }
+
+    private LongHashMap(LongHashMap<V> other) {
+        table = other.table.clone();
+        keys = other.keys.clone();
+        values = other.values.clone();
+        used = other.used;
+        size = other.size;
+    }
+
+    // Independent map with same entries, values are not copied
+    public LongHashMap<V> copy() {
+        return new LongHashMap<>(this);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        return table[findSlot(key)] != FREE;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int position = table[findSlot(key)];
+        return position == FREE ? null : (V) values[position];
+    }
+
+    // Null values are not allowed, returns previous value
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null)
+            throw new NullPointerException("Null values are not supported");
+
+        int slot = findSlot(key);
+        int position = table[slot];
+        if (position != FREE) {
+            V previous = (V) values[position];
+            values[position] = value;
+            return previous;
+        }
+
+        if (used == keys.length) {
+            // Reclaim removed entries first, grow only when mostly full
+            resize(size < used / 2 ? keys.length : keys.length * 2);
+            slot = findSlot(key);
+        }
+        keys[used] = key;
+        values[used] = value;
+        table[slot] = used++;
+        size++;
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = findSlot(key);
+        int position = table[slot];
+        if (position == FREE)
+            return null;
+
+        V previous = (V) values[position];
+        values[position] = null;
+        size--;
+        deleteSlot(slot);
+        return previous;
+    }
+
+    public void clear() {
+        allocate(MIN_CAPACITY);
+    }
+
+    public long[] keys() {
+        long[] result = new long[size];
+        int i = 0;
+        for (int position = 0; position < used; position++)
+            if (values[position] != null)
+                result[i++] = keys[position];
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        List<V> result = new ArrayList<>(size);
+        for (int position = 0; position < used; position++)
+            if (values[position] != null)
+                result.add((V) values[position]);
+        return result;
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return new Iterator<>() {
+
+            private int position = skipRemoved(0);
+
+            @Override
+            public boolean hasNext() {
+                return position < used;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public V next() {
+                if (position >= used)
+                    throw new NoSuchElementException();
+                V value = (V) values[position];
+                position = skipRemoved(position + 1);
+                return value;
+            }
+        };
+    }
+
+    private int skipRemoved(int position) {
+        while (position < used && values[position] == null)
+            position++;
+        return position;
+    }
+
+    private int findSlot(long key) {
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        while (table[slot] != FREE && keys[table[slot]] != key)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    // Backward shift deletion keeps probe chains without tombstones
+    private void deleteSlot(int slot) {
+        int mask = table.length - 1;
+        int next = (slot + 1) & mask;
+        while (table[next] != FREE) {
+            int home = hash(keys[table[next]]) & mask;
+            // Move entry back if its home slot is not between slot and next
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                table[slot] = table[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[slot] = FREE;
+    }
+
+    private void allocate(int capacity) {
+        table = new int[Integer.highestOneBit(capacity * 2 - 1) * 2];
+        Arrays.fill(table, FREE);
+        keys = new long[capacity];
+        values = new Object[capacity];
+        used = 0;
+        size = 0;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        int oldUsed = used;
+
+        allocate(capacity);
+        for (int position = 0; position < oldUsed; position++) {
+            if (oldValues[position] == null)
+                continue;
+            keys[used] = oldKeys[position];
+            values[used] = oldValues[position];
+            table[findSlot(oldKeys[position])] = used++;
+            size++;
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.database.index;
+
+import java.util.function.LongConsumer;
+
+// Set of primitive longs, iterates in insertion order
+public class LongHashSet {
+
+    private static final Object PRESENT = Boolean.TRUE;
+
+    private final LongHashMap<Object> map;
+
+    public LongHashSet() {
+        map = new LongHashMap<>();
+    }
+
+    public LongHashSet(int expectedSize) {
+        map = new LongHashMap<>(expectedSize);
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    public boolean contains(long value) {
+        return map.containsKey(value);
+    }
+
+    // Returns true if value wasn't present
+    public boolean add(long value) {
+        return map.put(value, PRESENT) == null;
+    }
+
+    // Returns true if value was present
+    public boolean remove(long value) {
+        return map.remove(value) != null;
+    }
+
+    public void clear() {
+        map.clear();
+    }
+
+    public long[] toArray() {
+        return map.keys();
+    }
+
+    public void forEach(LongConsumer action) {
+        for (long value : map.keys())
+            action.accept(value);
+    }
+}
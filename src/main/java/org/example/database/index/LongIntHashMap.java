@@ -0,0 +1,130 @@
+package org.example.database.index;
+
+import java.util.Arrays;
+
+// Hash map with primitive long keys and non negative int values
+public class LongIntHashMap {
+
+    public static final int MISSING = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    // Open addressing with linear probing, MISSING value marks free slot
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    public LongIntHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        allocate(Integer.highestOneBit(Math.max(MIN_CAPACITY, expectedSize) * 2 - 1) * 2);
+    }
+
+    private LongIntHashMap(LongIntHashMap other) {
+        keys = other.keys.clone();
+        values = other.values.clone();
+        size = other.size;
+    }
+
+    // Independent map with same entries
+    public LongIntHashMap copy() {
+        return new LongIntHashMap(this);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Value for key or MISSING
+    public int get(long key) {
+        return values[findSlot(key)];
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != MISSING;
+    }
+
+    // Returns previous value or MISSING
+    public int put(long key, int value) {
+        if (value < 0)
+            throw new IllegalArgumentException("Negative values are not supported");
+
+        int slot = findSlot(key);
+        int previous = values[slot];
+        if (previous == MISSING) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+                slot = findSlot(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+        return previous;
+    }
+
+    // Returns removed value or MISSING
+    public int remove(long key) {
+        int slot = findSlot(key);
+        int previous = values[slot];
+        if (previous == MISSING)
+            return MISSING;
+
+        size--;
+        // Backward shift deletion keeps probe chains without tombstones
+        int mask = keys.length - 1;
+        int next = (slot + 1) & mask;
+        while (values[next] != MISSING) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[slot] = MISSING;
+        return previous;
+    }
+
+    public void clear() {
+        allocate(MIN_CAPACITY * 2);
+    }
+
+    private int findSlot(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != MISSING && keys[slot] != key)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        size = 0;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+
+        allocate(capacity);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldValues[slot] == MISSING)
+                continue;
+            int newSlot = findSlot(oldKeys[slot]);
+            keys[newSlot] = oldKeys[slot];
+            values[newSlot] = oldValues[slot];
+            size++;
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,174 @@
+package org.example.database.index;
+
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.LongFunction;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.DoubleStream;
+
+// Maximum of value per group of entities, with groups sorted by their maximum.
+// Removing the only entity holding a maximum marks the group stale, it is
+// recomputed from group values on next refresh. Groups added by addGroup are
+// kept without entities, with maximum of negative infinity.
+public class MaxAggregateIndex<T> implements TableIndex<T> {
+
+    private final ToLongFunction<T> groupKey;
+    private final ToDoubleFunction<T> value;
+    // Group id -> aggregate
+    private final LongHashMap<Aggregate> groups = new LongHashMap<>();
+    // Maximum -> group ids, stale groups are left out until refreshed
+    private final NavigableMap<Double, LongHashSet> byMax = new TreeMap<>();
+    private final LongHashSet stale = new LongHashSet();
+
+    public MaxAggregateIndex(ToLongFunction<T> groupKey, ToDoubleFunction<T> value) {
+        this.groupKey = groupKey;
+        this.value = value;
+    }
+
+    // Recomputes stale groups, groupValues gives all current values of a group
+    public void refresh(LongFunction<DoubleStream> groupValues) {
+        if (stale.isEmpty())
+            return;
+        for (long group : stale.toArray()) {
+            Aggregate aggregate = groups.get(group);
+            aggregate.max = Double.NEGATIVE_INFINITY;
+            aggregate.countAtMax = 0;
+            groupValues.apply(group).forEach(v -> {
+                if (v > aggregate.max) {
+                    aggregate.max = v;
+                    aggregate.countAtMax = 1;
+                } else if (v == aggregate.max) {
+                    aggregate.countAtMax++;
+                }
+            });
+            addToSorted(group, aggregate.max);
+        }
+        stale.clear();
+    }
+
+    // Groups with maximum strictly less than bound, must be refreshed first
+    public LongHashSet groupsWithMaxLessThan(double bound) {
+        LongHashSet result = new LongHashSet();
+        for (LongHashSet ids : byMax.headMap(bound, false).values())
+            ids.forEach(result::add);
+        return result;
+    }
+
+    // Group stays in index after its last entity is removed
+    public void addGroup(long group) {
+        Aggregate aggregate = groups.get(group);
+        if (aggregate == null) {
+            aggregate = new Aggregate();
+            aggregate.max = Double.NEGATIVE_INFINITY;
+            groups.put(group, aggregate);
+            addToSorted(group, aggregate.max);
+        }
+        aggregate.kept = true;
+    }
+
+    // Group is dropped with its last entity again, right away if it has none
+    public void removeGroup(long group) {
+        Aggregate aggregate = groups.get(group);
+        if (aggregate == null)
+            return;
+        aggregate.kept = false;
+        if (aggregate.size == 0) {
+            removeFromSorted(group, aggregate.max);
+            groups.remove(group);
+        }
+    }
+
+    // Removes all groups added by addGroup
+    public void removeGroups() {
+        for (long group : groups.keys())
+            removeGroup(group);
+    }
+
+    @Override
+    public void clear() {
+        groups.clear();
+        byMax.clear();
+        stale.clear();
+    }
+
+    @Override
+    public void add(T entity) {
+        long group = groupKey.applyAsLong(entity);
+        double v = value.applyAsDouble(entity);
+        Aggregate aggregate = groups.get(group);
+
+        if (aggregate == null) {
+            aggregate = new Aggregate();
+            aggregate.max = v;
+            aggregate.countAtMax = 1;
+            aggregate.size = 1;
+            groups.put(group, aggregate);
+            addToSorted(group, v);
+            return;
+        }
+
+        aggregate.size++;
+        // Stale groups pick new value up on refresh
+        if (stale.contains(group))
+            return;
+        if (v > aggregate.max) {
+            removeFromSorted(group, aggregate.max);
+            aggregate.max = v;
+            aggregate.countAtMax = 1;
+            addToSorted(group, v);
+        } else if (v == aggregate.max) {
+            aggregate.countAtMax++;
+        }
+    }
+
+    @Override
+    public void remove(T entity) {
+        long group = groupKey.applyAsLong(entity);
+        double v = value.applyAsDouble(entity);
+        Aggregate aggregate = groups.get(group);
+        if (aggregate == null)
+            return;
+
+        if (--aggregate.size == 0) {
+            if (!stale.remove(group))
+                removeFromSorted(group, aggregate.max);
+            if (aggregate.kept) {
+                aggregate.max = Double.NEGATIVE_INFINITY;
+                aggregate.countAtMax = 0;
+                addToSorted(group, aggregate.max);
+            } else {
+                groups.remove(group);
+            }
+            return;
+        }
+
+        if (stale.contains(group) || v != aggregate.max)
+            return;
+        if (--aggregate.countAtMax == 0) {
+            removeFromSorted(group, aggregate.max);
+            stale.add(group);
+        }
+    }
+
+    private void addToSorted(long group, double max) {
+        byMax.computeIfAbsent(max, k -> new LongHashSet()).add(group);
+    }
+
+    private void removeFromSorted(long group, double max) {
+        LongHashSet ids = byMax.get(max);
+        if (ids == null)
+            return;
+        ids.remove(group);
+        if (ids.isEmpty())
+            byMax.remove(max);
+    }
+
+    private static class Aggregate {
+        private double max;
+        private int countAtMax;
+        private int size;
+        // Added by addGroup
+        private boolean kept;
+    }
+}
@@ -0,0 +1,85 @@
+package org.example.database.index;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+import java.util.function.ToLongFunction;
+
+// Ids in ascending order, seeks to first id after given one for paging.
+// Generated ids mostly grow, so they are appended. Ids out of order and removed
+// ids are sorted in and dropped by next seek, not on every change.
+public class SortedIdIndex<T> implements TableIndex<T> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final ToLongFunction<T> primaryKey;
+    private long[] ids = new long[MIN_CAPACITY];
+    private int size;
+    private boolean sorted = true;
+    // Removed ids still in array
+    private final LongHashSet removed = new LongHashSet();
+
+    public SortedIdIndex(ToLongFunction<T> primaryKey) {
+        this.primaryKey = primaryKey;
+    }
+
+    // Visits ids greater than afterId in ascending order while visitor returns true.
+    // Synchronized since seek sorts pending changes, visiting happens without lock
+    // as changes are never made while table is read.
+    public void forEachAfter(long afterId, LongPredicate visitor) {
+        long[] current;
+        int from;
+        int to;
+        synchronized (this) {
+            refresh();
+            current = ids;
+            to = size;
+            from = Arrays.binarySearch(current, 0, to, afterId);
+            from = from >= 0 ? from + 1 : -from - 1;
+        }
+        for (int i = from; i < to; i++)
+            if (!visitor.test(current[i]))
+                return;
+    }
+
+    @Override
+    public synchronized void clear() {
+        ids = new long[MIN_CAPACITY];
+        size = 0;
+        sorted = true;
+        removed.clear();
+    }
+
+    @Override
+    public synchronized void add(T entity) {
+        long id = primaryKey.applyAsLong(entity);
+        // Update removes and adds same id, which is still in array
+        if (removed.remove(id))
+            return;
+        if (size == ids.length)
+            ids = Arrays.copyOf(ids, size * 2);
+        if (size > 0 && id < ids[size - 1])
+            sorted = false;
+        ids[size++] = id;
+    }
+
+    @Override
+    public synchronized void remove(T entity) {
+        removed.add(primaryKey.applyAsLong(entity));
+    }
+
+    private void refresh() {
+        if (sorted && removed.isEmpty())
+            return;
+        // New array, so ids visited by earlier seeks don't change
+        long[] live = new long[Math.max(MIN_CAPACITY, size - removed.size())];
+        int count = 0;
+        for (int i = 0; i < size; i++)
+            if (!removed.contains(ids[i]))
+                live[count++] = ids[i];
+        Arrays.sort(live, 0, count);
+        ids = live;
+        size = count;
+        sorted = true;
+        removed.clear();
+    }
+}
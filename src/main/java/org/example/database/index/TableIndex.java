@@ -0,0 +1,8 @@
+package org.example.database.index;
+
+// Secondary index kept in sync with table rows
+public interface TableIndex<T> {
+    void clear();
+    void add(T entity);
+    void remove(T entity);
+}
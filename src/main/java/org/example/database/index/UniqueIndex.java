@@ -0,0 +1,65 @@
+package org.example.database.index;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+// Unique index from key to id of entity, for constraint checks and lookups.
+// Files written before constraint existed may hold duplicate keys, first loaded
+// entity is returned for key then. Other ones are kept aside, so key stays
+// indexed until last entity with it is removed.
+public class UniqueIndex<T, K> implements TableIndex<T> {
+
+    private final Function<T, K> key;
+    private final ToLongFunction<T> primaryKey;
+    private final Map<K, Long> index = new HashMap<>();
+    // Key -> ids of duplicates not returned by get
+    private final Map<K, LongHashSet> duplicates = new HashMap<>();
+
+    public UniqueIndex(Function<T, K> key, ToLongFunction<T> primaryKey) {
+        this.key = key;
+        this.primaryKey = primaryKey;
+    }
+
+    // Id of entity with key or null
+    public Long get(K key) {
+        return index.get(key);
+    }
+
+    @Override
+    public void clear() {
+        index.clear();
+        duplicates.clear();
+    }
+
+    @Override
+    public void add(T entity) {
+        K k = key.apply(entity);
+        long id = primaryKey.applyAsLong(entity);
+        Long indexed = index.putIfAbsent(k, id);
+        if (indexed != null && indexed != id)
+            duplicates.computeIfAbsent(k, d -> new LongHashSet()).add(id);
+    }
+
+    @Override
+    public void remove(T entity) {
+        K k = key.apply(entity);
+        long id = primaryKey.applyAsLong(entity);
+        LongHashSet ids = duplicates.get(k);
+        if (!index.remove(k, id)) {
+            // Duplicate which wasn't returned by get
+            if (ids != null && ids.remove(id) && ids.isEmpty())
+                duplicates.remove(k);
+            return;
+        }
+        if (ids == null)
+            return;
+        // Next duplicate takes place of removed entity
+        long next = ids.toArray()[0];
+        index.put(k, next);
+        ids.remove(next);
+        if (ids.isEmpty())
+            duplicates.remove(k);
+    }
+}
@@ -0,0 +1,11 @@
+package org.example.entity;
+
+import org.example.binary.StringDictionary;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+public interface BinaryWritable {
+    // Strings are written as codes of dictionary, or inline if dictionary is null
+    void writeBinary(DataOutput out, StringDictionary strings) throws IOException;
+}
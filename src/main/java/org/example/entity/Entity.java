@@ -0,0 +1,6 @@
+package org.example.entity;
+
+public interface Entity extends JSONable, BinaryWritable {
+    long getId();
+    void setId(long id);
+}
@@ -1,5 +1,10 @@
 package org.example.entity;
 
+import org.example.json.JsonWriter;
+
+import java.io.IOException;
+
 public interface JSONable {
     String toJSON();
+    void writeJSON(JsonWriter writer) throws IOException;
 }
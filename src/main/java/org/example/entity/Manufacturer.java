@@ -1,8 +1,14 @@
 package org.example.entity;
 
+import org.example.binary.BinaryStrings;
+import org.example.binary.StringDictionary;
+import org.example.json.JsonWriter;
 import org.json.JSONObject;
 
-public class Manufacturer implements JSONable {
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class Manufacturer implements Entity {
 
     private long id;
     private String name;
@@ -38,10 +44,12 @@ public class Manufacturer implements JSONable {
         }
     }
 
+    @Override
     public long getId() {
         return id;
     }
 
+    @Override
     public void setId(long id) {
         this.id = id;
     }
@@ -71,6 +79,22 @@ public class Manufacturer implements JSONable {
         return jsonObject.toString();
     }
 
+    @Override
+    public void writeJSON(JsonWriter writer) throws IOException {
+        writer.beginObject()
+                .name("id").value(id)
+                .name("name").value(name)
+                .name("country").value(country)
+                .endObject();
+    }
+
+    @Override
+    public void writeBinary(DataOutput out, StringDictionary strings) throws IOException {
+        out.writeLong(id);
+        BinaryStrings.write(out, name, strings);
+        BinaryStrings.write(out, country, strings);
+    }
+
     @Override
     public String toString() {
         return "Manufacturer{" +
@@ -1,13 +1,27 @@
 package org.example.entity;
 
+import org.example.binary.BinaryStrings;
+import org.example.binary.StringDictionary;
+import org.example.json.JsonWriter;
 import org.json.JSONObject;
 
-public class Product implements JSONable {
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+public class Product implements Entity {
+
+    private static final DateTimeFormatter INPUT_FORMAT
+            = DateTimeFormatter.ofPattern("dd-MM-yyyy", Locale.ENGLISH);
 
     private long id;
     private String name;
     private long manufacturerId;
-    private String date;
+    // Days since 1970-01-01, exposed as ISO date string
+    private int epochDay;
     private double price;
 
     public Product() {}
@@ -36,7 +50,12 @@ public class Product implements JSONable {
         }
 
         public Builder setDate(String date) {
-            product.date = date;
+            product.setDate(date);
+            return this;
+        }
+
+        public Builder setEpochDay(int epochDay) {
+            product.epochDay = epochDay;
             return this;
         }
 
@@ -50,10 +69,12 @@ public class Product implements JSONable {
         }
     }
 
+    @Override
     public long getId() {
         return id;
     }
 
+    @Override
     public void setId(long id) {
         this.id = id;
     }
@@ -75,11 +96,20 @@ public class Product implements JSONable {
     }
 
     public String getDate() {
-        return date;
+        return LocalDate.ofEpochDay(epochDay).toString();
     }
 
+    // Accepts ISO 'yyyy-MM-dd' and input format 'dd-MM-yyyy'
     public void setDate(String date) {
-        this.date = date;
+        this.epochDay = parseEpochDay(date);
+    }
+
+    public int getEpochDay() {
+        return epochDay;
+    }
+
+    public void setEpochDay(int epochDay) {
+        this.epochDay = epochDay;
     }
 
     public double getPrice() {
@@ -96,19 +126,47 @@ public class Product implements JSONable {
         jsonObject.put("id", id);
         jsonObject.put("name", name);
         jsonObject.put("manufacturerId", manufacturerId);
-        jsonObject.put("date", date);
+        jsonObject.put("date", getDate());
         jsonObject.put("price", price);
         return jsonObject.toString();
     }
 
+    @Override
+    public void writeJSON(JsonWriter writer) throws IOException {
+        writer.beginObject()
+                .name("id").value(id)
+                .name("name").value(name)
+                .name("manufacturerId").value(manufacturerId)
+                .name("date").value(getDate())
+                .name("price").value(price)
+                .endObject();
+    }
+
+    @Override
+    public void writeBinary(DataOutput out, StringDictionary strings) throws IOException {
+        out.writeLong(id);
+        BinaryStrings.write(out, name, strings);
+        out.writeLong(manufacturerId);
+        out.writeInt(epochDay);
+        out.writeDouble(price);
+    }
+
     @Override
     public String toString() {
         return "Product{" +
                 "id=" + id +
                 ", name='" + name + '\'' +
                 ", manufacturerId=" + manufacturerId +
-                ", date='" + date + '\'' +
+                ", date='" + getDate() + '\'' +
                 ", price=" + price +
                 '}';
     }
+
+    private static int parseEpochDay(String date) {
+        try {
+            return (int) LocalDate.parse(date).toEpochDay();
+        } catch (DateTimeParseException e) {
+            return (int) LocalDate.parse(date, INPUT_FORMAT).toEpochDay();
+        }
+    }
 }
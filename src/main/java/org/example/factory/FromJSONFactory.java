@@ -1,22 +1,129 @@
 package org.example.factory;
 
+import org.example.binary.StringDictionary;
+import org.example.json.JsonReader;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 public abstract class FromJSONFactory<T> {
 
+    // Parsed strings are interned into dictionary if present
+    private StringDictionary dictionary;
+    // Strings of parse running on several threads, see parseConcurrently
+    private volatile Map<String, String> concurrentStrings;
+    // Rows skipped by createAll since last taken, chunks may be parsed concurrently
+    private final List<String> invalidRows = Collections.synchronizedList(new ArrayList<>());
+
+    protected FromJSONFactory() {
+        this(null);
+    }
+
+    protected FromJSONFactory(StringDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    public StringDictionary getDictionary() {
+        return dictionary;
+    }
+
+    // Starts over with empty dictionary, so strings no longer used are dropped.
+    // Anything built on old dictionary keeps using it.
+    public void resetDictionary() {
+        if (dictionary != null)
+            dictionary = new StringDictionary();
+    }
+
+    public String intern(String value) {
+        if (dictionary == null)
+            return value;
+        Map<String, String> strings = concurrentStrings;
+        if (strings != null) {
+            String interned = strings.putIfAbsent(value, value);
+            return interned == null ? value : interned;
+        }
+        return dictionary.intern(value);
+    }
+
+    // Runs parse creating entities on several threads. Meanwhile strings are interned
+    // into concurrent map instead of dictionary, so workers don't contend on one lock,
+    // and are added to dictionary once parse is done.
+    public <R> R parseConcurrently(Supplier<R> parse) {
+        if (dictionary == null)
+            return parse.get();
+        Map<String, String> strings = new ConcurrentHashMap<>();
+        concurrentStrings = strings;
+        R result;
+        try {
+            result = parse.get();
+        } finally {
+            concurrentStrings = null;
+        }
+        for (String value : strings.values())
+            dictionary.intern(value);
+        return result;
+    }
+
+    // Messages naming rows skipped by createAll since last call
+    public List<String> takeInvalidRows() {
+        synchronized (invalidRows) {
+            List<String> rows = new ArrayList<>(invalidRows);
+            invalidRows.clear();
+            return rows;
+        }
+    }
+
+    // Invalid rows are skipped and recorded, so one of them doesn't fail whole table
+    private void add(List<T> entities, Supplier<T> create) {
+        try {
+            entities.add(create.get());
+        } catch (InvalidRowException e) {
+            invalidRows.add(e.getMessage());
+        }
+    }
+
     public List<T> createAll(String json) {
         List<T> returnArray = new ArrayList<>();
         JSONArray jsonArray = new JSONArray(json);
         for (int i = 0; i < jsonArray.length(); i++) {
             JSONObject jsonObject = jsonArray.getJSONObject(i);
-            returnArray.add(create(jsonObject));
+            add(returnArray, () -> create(jsonObject));
         }
         return returnArray;
     }
 
+    // Builds entities straight from tokens, without intermediate JSONArray
+    public List<T> createAll(JsonReader reader) {
+        List<T> returnArray = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext())
+            add(returnArray, () -> create(reader));
+        reader.endArray();
+        return returnArray;
+    }
+
+    // Builds count entities from consecutive array elements, such as chunk of
+    // array split at element boundaries
+    public List<T> createAll(JsonReader reader, int count) {
+        List<T> returnArray = new ArrayList<>(count);
+        for (int i = 0; i < count && reader.hasNext(); i++)
+            add(returnArray, () -> create(reader));
+        return returnArray;
+    }
+
     public abstract T create(JSONObject jsonObject);
+
+    public abstract T create(JsonReader reader);
+
+    // Reads fields written by entity writeBinary with same strings dictionary
+    public abstract T create(ByteBuffer buffer, StringDictionary strings);
+
+    public abstract T copy(T entity);
 }
@@ -0,0 +1,15 @@
+package org.example.factory;
+
+// Row which is well formed but holds value its entity can't represent
+public class InvalidRowException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InvalidRowException(String message) {
+        super(message);
+    }
+
+    public InvalidRowException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
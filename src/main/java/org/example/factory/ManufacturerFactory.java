@@ -1,15 +1,28 @@
 package org.example.factory;
 
+import org.example.binary.BinaryStrings;
+import org.example.binary.StringDictionary;
 import org.example.entity.Manufacturer;
+import org.example.json.JsonReader;
 import org.json.JSONObject;
 
+import java.nio.ByteBuffer;
+
 public class ManufacturerFactory extends FromJSONFactory<Manufacturer> {
+
+    public ManufacturerFactory() {
+    }
+
+    // Interns names and countries into dictionary
+    public ManufacturerFactory(StringDictionary dictionary) {
+        super(dictionary);
+    }
     @Override
     public Manufacturer create(JSONObject jsonObject) {
 
         long id = jsonObject.getLong("id");
-        String name = jsonObject.getString("name");
-        String country = jsonObject.getString("country");
+        String name = intern(jsonObject.getString("name"));
+        String country = intern(jsonObject.getString("country"));
 
         return new Manufacturer.Builder()
                 .setId(id)
@@ -17,4 +30,41 @@ public class ManufacturerFactory extends FromJSONFactory<Manufacturer> {
                 .setCountry(country)
                 .build();
     }
+
+    @Override
+    public Manufacturer create(JsonReader reader) {
+
+        Manufacturer.Builder builder = new Manufacturer.Builder();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id" -> builder.setId(reader.nextLong());
+                case "name" -> builder.setName(intern(reader.nextString()));
+                case "country" -> builder.setCountry(intern(reader.nextString()));
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return builder.build();
+    }
+
+    @Override
+    public Manufacturer create(ByteBuffer buffer, StringDictionary strings) {
+        return new Manufacturer.Builder()
+                .setId(buffer.getLong())
+                .setName(BinaryStrings.read(buffer, strings))
+                .setCountry(BinaryStrings.read(buffer, strings))
+                .build();
+    }
+
+    @Override
+    public Manufacturer copy(Manufacturer entity) {
+        return new Manufacturer.Builder()
+                .setId(entity.getId())
+                .setName(entity.getName())
+                .setCountry(entity.getCountry())
+                .build();
+    }
 }
@@ -1,25 +1,96 @@
 package org.example.factory;
 
+import org.example.binary.BinaryStrings;
+import org.example.binary.StringDictionary;
 import org.example.entity.Product;
+import org.example.json.JsonReader;
 import org.json.JSONObject;
 
+import java.nio.ByteBuffer;
+import java.time.format.DateTimeParseException;
+
 public class ProductFactory extends FromJSONFactory<Product> {
 
+    public ProductFactory() {
+    }
+
+    // Interns names into dictionary
+    public ProductFactory(StringDictionary dictionary) {
+        super(dictionary);
+    }
+
     @Override
     public Product create(JSONObject jsonObject) {
 
         long id = jsonObject.getLong("id");
-        String name = jsonObject.getString("name");
+        String name = intern(jsonObject.getString("name"));
         long manufacturerId = jsonObject.getLong("manufacturerId");
-        String date = jsonObject.getString("date");
+        String date = jsonObject.optString("date", null);
         double price = jsonObject.getDouble("price");
 
-        return new Product.Builder()
+        Product product = new Product.Builder()
                 .setId(id)
                 .setName(name)
                 .setManufacturerId(manufacturerId)
-                .setDate(date)
                 .setPrice(price)
                 .build();
+        return withDate(product, date);
+    }
+
+    @Override
+    public Product create(JsonReader reader) {
+
+        Product.Builder builder = new Product.Builder();
+        String date = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id" -> builder.setId(reader.nextLong());
+                case "name" -> builder.setName(intern(reader.nextString()));
+                case "manufacturerId" -> builder.setManufacturerId(reader.nextLong());
+                case "date" -> date = reader.nextString();
+                case "price" -> builder.setPrice(reader.nextDouble());
+                default -> reader.skipValue();
+            }
+        }
+        // Whole object is consumed before date is checked, so parsing can go on
+        reader.endObject();
+
+        return withDate(builder.build(), date);
+    }
+
+    // Stored dates are required, product without one would land on 1970-01-01
+    private static Product withDate(Product product, String date) {
+        if (date == null)
+            throw new InvalidRowException("Product " + product.getId() + " has no date");
+        try {
+            product.setDate(date);
+        } catch (DateTimeParseException e) {
+            throw new InvalidRowException("Product " + product.getId() + " has invalid date '" + date + "'", e);
+        }
+        return product;
+    }
+
+    @Override
+    public Product create(ByteBuffer buffer, StringDictionary strings) {
+        return new Product.Builder()
+                .setId(buffer.getLong())
+                .setName(BinaryStrings.read(buffer, strings))
+                .setManufacturerId(buffer.getLong())
+                .setEpochDay(buffer.getInt())
+                .setPrice(buffer.getDouble())
+                .build();
+    }
+
+    @Override
+    public Product copy(Product entity) {
+        return new Product.Builder()
+                .setId(entity.getId())
+                .setName(entity.getName())
+                .setManufacturerId(entity.getManufacturerId())
+                .setEpochDay(entity.getEpochDay())
+                .setPrice(entity.getPrice())
+                .build();
     }
 }
@@ -0,0 +1,71 @@
+package org.example.json;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+// Splits buffer holding JSON array into slices of whole elements, so slices can
+// be parsed independently. Only tracks strings and nesting, nothing is decoded.
+public class JsonArraySplitter {
+
+    // Consecutive elements of array, separated by commas, without brackets
+    public record Chunk(ByteBuffer buffer, int count) {}
+
+    // Slices of at least chunkSize bytes, except last one
+    public static List<Chunk> split(ByteBuffer buffer, int chunkSize) {
+        List<Chunk> chunks = new ArrayList<>();
+        int end = buffer.limit();
+        int i = buffer.position();
+        while (i < end && isWhitespace(buffer.get(i) & 0xFF))
+            i++;
+        if (i == end || buffer.get(i) != '[')
+            throw new JsonParseException("Expected '[' at byte " + i);
+
+        int chunkStart = ++i;
+        int count = 0;
+        int depth = 0;
+        boolean inString = false;
+        boolean inElement = false;
+        for (; i < end; i++) {
+            int c = buffer.get(i) & 0xFF;
+            if (inString) {
+                if (c == '\\')
+                    i++;
+                else if (c == '"')
+                    inString = false;
+                continue;
+            }
+            if (c == ',' && depth == 0) {
+                count++;
+                inElement = false;
+                if (i - chunkStart >= chunkSize) {
+                    chunks.add(new Chunk(buffer.slice(chunkStart, i - chunkStart), count));
+                    chunkStart = i + 1;
+                    count = 0;
+                }
+                continue;
+            }
+            if ((c == ']' || c == '}') && depth == 0) {
+                // End of array
+                if (inElement)
+                    count++;
+                if (count > 0)
+                    chunks.add(new Chunk(buffer.slice(chunkStart, i - chunkStart), count));
+                return chunks;
+            }
+            if (c == '"')
+                inString = true;
+            else if (c == '{' || c == '[')
+                depth++;
+            else if (c == '}' || c == ']')
+                depth--;
+            if (!isWhitespace(c))
+                inElement = true;
+        }
+        throw new JsonParseException("Unterminated array");
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+}
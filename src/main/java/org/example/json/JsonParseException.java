@@ -0,0 +1,10 @@
+package org.example.json;
+
+public class JsonParseException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public JsonParseException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,265 @@
+package org.example.json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Pull parser reading UTF-8 JSON token by token, either from a channel
+// through a small buffer or straight from a buffer holding whole input.
+public class JsonReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+    private boolean endOfInput;
+
+    // Bytes of current string or number
+    private byte[] scratch = new byte[64];
+    private int scratchLength;
+    // Set after value, until separator is consumed
+    private boolean expectSeparator;
+
+    public JsonReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.buffer.flip();
+    }
+
+    public JsonReader(ByteBuffer buffer) {
+        this.channel = null;
+        this.buffer = buffer;
+    }
+
+    public void beginArray() {
+        expect('[');
+        expectSeparator = false;
+    }
+
+    public void endArray() {
+        expect(']');
+        expectSeparator = true;
+    }
+
+    public void beginObject() {
+        expect('{');
+        expectSeparator = false;
+    }
+
+    public void endObject() {
+        expect('}');
+        expectSeparator = true;
+    }
+
+    // True if current array or object has more elements
+    public boolean hasNext() {
+        int c = peekNonWhitespace();
+        if (c == ']' || c == '}')
+            return false;
+        if (expectSeparator) {
+            expect(',');
+            expectSeparator = false;
+        }
+        return true;
+    }
+
+    public String nextName() {
+        hasNext();
+        String name = readString();
+        expect(':');
+        expectSeparator = false;
+        return name;
+    }
+
+    public String nextString() {
+        hasNext();
+        String value = readString();
+        expectSeparator = true;
+        return value;
+    }
+
+    public long nextLong() {
+        hasNext();
+        int c = peekNonWhitespace();
+        boolean negative = c == '-';
+        if (negative)
+            read();
+
+        long value = 0;
+        int digits = 0;
+        while (isDigit(peek())) {
+            // Accumulate negative to cover Long.MIN_VALUE
+            int digit = read() - '0';
+            if (value < Long.MIN_VALUE / 10 || value * 10 < Long.MIN_VALUE + digit)
+                throw syntaxError("Number out of long range");
+            value = value * 10 - digit;
+            digits++;
+        }
+        if (digits == 0)
+            throw syntaxError("Expected number");
+        if (!negative && value == Long.MIN_VALUE)
+            throw syntaxError("Number out of long range");
+        // Integral values may be written with zero fraction
+        if (peek() == '.') {
+            read();
+            while (peek() == '0')
+                read();
+            if (isDigit(peek()))
+                throw syntaxError("Expected integer");
+        }
+        expectSeparator = true;
+        return negative ? value : -value;
+    }
+
+    public double nextDouble() {
+        hasNext();
+        peekNonWhitespace();
+        scratchLength = 0;
+        int c = peek();
+        while (isDigit(c) || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+            append(read());
+            c = peek();
+        }
+        if (scratchLength == 0)
+            throw syntaxError("Expected number");
+        expectSeparator = true;
+        return Double.parseDouble(new String(scratch, 0, scratchLength, StandardCharsets.US_ASCII));
+    }
+
+    // Skips value of any type including nested arrays and objects
+    public void skipValue() {
+        hasNext();
+        int c = peekNonWhitespace();
+        switch (c) {
+            case '"' -> readString();
+            case '[' -> {
+                beginArray();
+                while (hasNext())
+                    skipValue();
+                endArray();
+            }
+            case '{' -> {
+                beginObject();
+                while (hasNext()) {
+                    nextName();
+                    skipValue();
+                }
+                endObject();
+            }
+            default -> {
+                // Number or literal
+                while (c != -1 && c != ',' && c != ']' && c != '}' && !isWhitespace(c)) {
+                    read();
+                    c = peek();
+                }
+            }
+        }
+        expectSeparator = true;
+    }
+
+    private String readString() {
+        expect('"');
+        scratchLength = 0;
+        StringBuilder escaped = null;
+        while (true) {
+            int c = read();
+            if (c == -1)
+                throw syntaxError("Unterminated string");
+            if (c == '"')
+                break;
+            if (c != '\\') {
+                append(c);
+                continue;
+            }
+            // Decode collected bytes before escaped character
+            if (escaped == null)
+                escaped = new StringBuilder();
+            escaped.append(new String(scratch, 0, scratchLength, StandardCharsets.UTF_8));
+            scratchLength = 0;
+            int e = read();
+            switch (e) {
+                case '"', '\\', '/' -> escaped.append((char) e);
+                case 'b' -> escaped.append('\b');
+                case 'f' -> escaped.append('\f');
+                case 'n' -> escaped.append('\n');
+                case 'r' -> escaped.append('\r');
+                case 't' -> escaped.append('\t');
+                case 'u' -> {
+                    int code = 0;
+                    for (int i = 0; i < 4; i++)
+                        code = code * 16 + Character.digit(read(), 16);
+                    escaped.append((char) code);
+                }
+                default -> throw syntaxError("Illegal escape");
+            }
+        }
+        String tail = new String(scratch, 0, scratchLength, StandardCharsets.UTF_8);
+        return escaped == null ? tail : escaped.append(tail).toString();
+    }
+
+    private void append(int b) {
+        if (scratchLength == scratch.length)
+            scratch = Arrays.copyOf(scratch, scratch.length * 2);
+        scratch[scratchLength++] = (byte) b;
+    }
+
+    private void expect(int expected) {
+        int c = peekNonWhitespace();
+        if (c != expected)
+            throw syntaxError("Expected '" + (char) expected + "'");
+        read();
+    }
+
+    private int peekNonWhitespace() {
+        int c = peek();
+        while (isWhitespace(c)) {
+            read();
+            c = peek();
+        }
+        return c;
+    }
+
+    private int peek() {
+        if (!buffer.hasRemaining() && !fill())
+            return -1;
+        return buffer.get(buffer.position()) & 0xFF;
+    }
+
+    private int read() {
+        if (!buffer.hasRemaining() && !fill())
+            return -1;
+        return buffer.get() & 0xFF;
+    }
+
+    private boolean fill() {
+        if (channel == null || endOfInput)
+            return false;
+        try {
+            buffer.clear();
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read == 0);
+            buffer.flip();
+            endOfInput = read == -1;
+            return buffer.hasRemaining();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private JsonParseException syntaxError(String message) {
+        return new JsonParseException(message + " at byte " + buffer.position());
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+}
@@ -0,0 +1,121 @@
+package org.example.json;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+// Writes JSON token by token straight to underlying writer
+public class JsonWriter {
+
+    private static final String[] ESCAPES = new String[128];
+
+    static {
+        for (int c = 0; c < 0x20; c++)
+            ESCAPES[c] = String.format("\\u%04x", c);
+        ESCAPES['"'] = "\\\"";
+        ESCAPES['\\'] = "\\\\";
+        ESCAPES['\b'] = "\\b";
+        ESCAPES['\f'] = "\\f";
+        ESCAPES['\n'] = "\\n";
+        ESCAPES['\r'] = "\\r";
+        ESCAPES['\t'] = "\\t";
+    }
+
+    private final Writer writer;
+    // Per nesting level, whether next element needs leading comma
+    private boolean[] needsComma = new boolean[8];
+    private int depth;
+    // Set after name, value follows without comma
+    private boolean afterName;
+
+    public JsonWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    public JsonWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    public JsonWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        writeString(name);
+        writer.write(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        separate();
+        if (value == null)
+            writer.write("null");
+        else
+            writeString(value);
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        separate();
+        writer.write(Long.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            throw new IllegalArgumentException("JSON doesn't allow " + value);
+        separate();
+        writer.write(Double.toString(value));
+        return this;
+    }
+
+    private JsonWriter open(char c) throws IOException {
+        separate();
+        writer.write(c);
+        if (++depth == needsComma.length)
+            needsComma = Arrays.copyOf(needsComma, depth * 2);
+        needsComma[depth] = false;
+        return this;
+    }
+
+    private JsonWriter close(char c) throws IOException {
+        depth--;
+        writer.write(c);
+        return this;
+    }
+
+    private void separate() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (needsComma[depth])
+            writer.write(',');
+        needsComma[depth] = true;
+    }
+
+    private void writeString(String value) throws IOException {
+        writer.write('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= ESCAPES.length || ESCAPES[c] == null)
+                continue;
+            writer.write(value, start, i - start);
+            writer.write(ESCAPES[c]);
+            start = i + 1;
+        }
+        writer.write(value, start, value.length() - start);
+        writer.write('"');
+    }
+}
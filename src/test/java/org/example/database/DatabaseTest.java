@@ -8,10 +8,24 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 
 public class DatabaseTest {
 
@@ -33,6 +47,12 @@ public class DatabaseTest {
         // Delete tables after use
         deleteFileIfExists(mfFile);
         deleteFileIfExists(pFFile);
+        deleteFileIfExists(mfFile + ".log");
+        deleteFileIfExists(pFFile + ".log");
+        deleteFileIfExists(mfFile + ".lock");
+        deleteFileIfExists(pFFile + ".lock");
+        deleteFileIfExists(mfFile + ".seq");
+        deleteFileIfExists(pFFile + ".seq");
     }
 
     public static void deleteFileIfExists(String fileStr) throws IllegalAccessException {
@@ -399,6 +419,7 @@ public class DatabaseTest {
         int expectedSize = 3;
 
         assertThat(actualSize).isEqualTo(expectedSize);
+        assertThat(dbHandler.readAllProductsByCountry("France")).isEmpty();
 
     }
 
@@ -624,4 +645,1138 @@ public class DatabaseTest {
 
     }
 
+    // Resident cache tests
+    @Test
+    public void testResidentTableReloadsChangedFile() {
+
+        Manufacturer manufacturer = new Manufacturer.Builder()
+                .setName("Panasonic")
+                .setCountry("Korea")
+                .build();
+
+        dbHandler.create(manufacturer);
+
+        // Fill cache of the first handler
+        dbHandler.readAllManufacturers();
+
+        // Change file through another handler
+        DatabaseHandler otherHandler = new DatabaseHandler(mfFile, pFFile);
+        manufacturer = new Manufacturer.Builder()
+                .setName("Sony")
+                .setCountry("Japan")
+                .build();
+
+        otherHandler.create(manufacturer);
+
+        int actualSize = dbHandler.readAllManufacturers().size();
+        int expectedSize = 2;
+
+        assertThat(actualSize).isEqualTo(expectedSize);
+    }
+
+    @Test
+    public void testResidentTableReturnsCopies() {
+
+        Manufacturer manufacturer = new Manufacturer.Builder()
+                .setName("Panasonic")
+                .setCountry("Korea")
+                .build();
+
+        dbHandler.create(manufacturer);
+
+        dbHandler.readAllManufacturers().get(0).setName("Changed");
+
+        String actualName = dbHandler.readAllManufacturers().get(0).getName();
+        String expectedName = "Panasonic";
+
+        assertThat(actualName).isEqualTo(expectedName);
+    }
+
+    // Primary key tests
+    @Test
+    public void testReadById() {
+
+        Manufacturer manufacturer = new Manufacturer.Builder()
+                .setName("Panasonic")
+                .setCountry("Korea")
+                .build();
+
+        dbHandler.create(manufacturer);
+
+        Product product = new Product.Builder()
+                .setName("Playstation 1")
+                .setManufacturerId(manufacturer.getId())
+                .setPrice(299.99)
+                .setDate("2000-12-12")
+                .build();
+
+        dbHandler.create(product);
+
+        assertThat(dbHandler.readManufacturerById(manufacturer.getId()).getName()).isEqualTo("Panasonic");
+        assertThat(dbHandler.readProductById(product.getId()).getName()).isEqualTo("Playstation 1");
+
+        dbHandler.delete(product);
+
+        assertThat(dbHandler.readProductById(product.getId())).isNull();
+    }
+
+    @Test
+    public void testManufacturerProductsFollowUpdate() {
+
+        Manufacturer sony = new Manufacturer.Builder()
+                .setName("Sony")
+                .setCountry("Japan")
+                .build();
+
+        dbHandler.create(sony);
+
+        Manufacturer nintendo = new Manufacturer.Builder()
+                .setName("Nintendo")
+                .setCountry("Japan")
+                .build();
+
+        dbHandler.create(nintendo);
+
+        Product product = new Product.Builder()
+                .setName("Playstation 1")
+                .setManufacturerId(sony.getId())
+                .setPrice(299.99)
+                .setDate("2000-12-12")
+                .build();
+
+        dbHandler.create(product);
+
+        product.setManufacturerId(nintendo.getId());
+        dbHandler.update(product);
+
+        assertThat(dbHandler.readAllManufacturerProducts(sony)).isEmpty();
+        assertThat(dbHandler.readAllManufacturerProducts(nintendo)).hasSize(1);
+        assertThat(dbHandler.readAllManufacturerProductsMap().values())
+                .extracting(List::size)
+                .containsExactly(0, 1);
+    }
+
+    // Join tests
+    @Test
+    public void testProductManufacturerMapOrphanPolicy() {
+
+        Manufacturer sony = new Manufacturer.Builder()
+                .setName("Sony")
+                .setCountry("Japan")
+                .build();
+
+        dbHandler.create(sony);
+
+        Manufacturer nintendo = new Manufacturer.Builder()
+                .setName("Nintendo")
+                .setCountry("Japan")
+                .build();
+
+        dbHandler.create(nintendo);
+
+        Product product = new Product.Builder()
+                .setName("Playstation 1")
+                .setManufacturerId(sony.getId())
+                .setPrice(299.99)
+                .setDate("2000-12-12")
+                .build();
+
+        dbHandler.create(product);
+
+        product = new Product.Builder()
+                .setName("Game Boy")
+                .setManufacturerId(nintendo.getId())
+                .setPrice(99.99)
+                .setDate("1989-04-21")
+                .build();
+
+        dbHandler.create(product);
+
+        // Leaves product without manufacturer
+        dbHandler.delete(nintendo);
+
+        assertThat(dbHandler.readAllProductManufacturerMap()).hasSize(1);
+        assertThat(dbHandler.readAllProductManufacturerMap(OrphanPolicy.KEEP)).hasSize(2);
+        assertThatThrownBy(() -> dbHandler.readAllProductManufacturerMap(OrphanPolicy.FAIL))
+                .isInstanceOf(IllegalStateException.class);
+
+        // Failed join ends its stage, so next stages don't nest in it
+        QueryProfile profile = dbHandler.explain(() -> {
+            assertThatThrownBy(() -> dbHandler.readAllProductManufacturerMap(OrphanPolicy.FAIL))
+                    .isInstanceOf(IllegalStateException.class);
+            dbHandler.readAllProducts();
+        });
+        assertThat(profile.getStages())
+                .extracting(QueryProfile.Stage::getOperation, QueryProfile.Stage::getDepth)
+                .containsExactly(tuple("snapshot", 0), tuple("hash join", 0), tuple("full scan", 0));
+    }
+
+    @Test
+    public void testProductsByCountryFollowUpdate() {
+
+        Manufacturer manufacturer = new Manufacturer.Builder()
+                .setName("Sony")
+                .setCountry("Japan")
+                .build();
+
+        dbHandler.create(manufacturer);
+
+        Product product = new Product.Builder()
+                .setName("Playstation 1")
+                .setManufacturerId(manufacturer.getId())
+                .setPrice(299.99)
+                .setDate("2000-12-12")
+                .build();
+
+        dbHandler.create(product);
+
+        manufacturer.setName("Sony Europe");
+        manufacturer.setCountry("France");
+        dbHandler.update(manufacturer);
+
+        assertThat(dbHandler.readAllProductsByCountry("Japan")).isEmpty();
+        assertThat(dbHandler.readAllProductsByCountry("France")).hasSize(1);
+    }
+
+    // Date tests
+    @Test
+    public void testReadAllProductsByDate() {
+
+        Manufacturer manufacturer = new Manufacturer.Builder()
+                .setName("Sony")
+                .setCountry("Japan")
+                .build();
+
+        dbHandler.create(manufacturer);
+
+        Product product = new Product.Builder()
+                .setName("Playstation 1")
+                .setManufacturerId(manufacturer.getId())
+                .setPrice(299.99)
+                .setDate("1994-12-03")
+                .build();
+
+        dbHandler.create(product);
+
+        product = new Product.Builder()
+                .setName("Playstation 2")
+                .setManufacturerId(manufacturer.getId())
+                .setPrice(399.99)
+                .setDate("04-03-2000")
+                .build();
+
+        dbHandler.create(product);
+
+        product = new Product.Builder()
+                .setName("Playstation 3")
+                .setManufacturerId(manufacturer.getId())
+                .setPrice(499.99)
+                .setDate("2006-11-11")
+                .build();
+
+        dbHandler.create(product);
+
+        List<Product> products = dbHandler.readAllProductsByDate(
+                LocalDate.of(1994, 12, 3), LocalDate.of(2000, 12, 31));
+
+        assertThat(products)
+                .extracting(Product::getDate)
+                .containsExactly("1994-12-03", "2000-03-04");
+    }
+
+    @Test
+    public void testManufacturersWherePriceLessThanFollowChanges() {
+
+        Manufacturer manufacturer = new Manufacturer.Builder()
+                .setName("Sony")
+                .setCountry("Japan")
+                .build();
+
+        dbHandler.create(manufacturer);
+
+        Product cheap = new Product.Builder()
+                .setName("Playstation 1")
+                .setManufacturerId(manufacturer.getId())
+                .setPrice(299.99)
+                .setDate("1994-12-03")
+                .build();
+
+        dbHandler.create(cheap);
+
+        Product expensive = new Product.Builder()
+                .setName("Playstation 3")
+                .setManufacturerId(manufacturer.getId())
+                .setPrice(499.99)
+                .setDate("2006-11-11")
+                .build();
+
+        dbHandler.create(expensive);
+
+        assertThat(dbHandler.readAllManufacturersWherePriceLessThan(450.0)).isEmpty();
+
+        // Removing most expensive product recomputes maximum
+        dbHandler.delete(expensive);
+
+        assertThat(dbHandler.readAllManufacturersWherePriceLessThan(450.0)).hasSize(1);
+
+        cheap.setPrice(599.99);
+        dbHandler.update(cheap);
+
+        assertThat(dbHandler.readAllManufacturersWherePriceLessThan(450.0)).isEmpty();
+    }
+
+    @Test
+    public void testManufacturersWithoutProductsFollowChanges() {
+
+        dbHandler = new DatabaseHandler(mfFile, pFFile, true);
+
+        Manufacturer sony = new Manufacturer.Builder()
+                .setName("Sony")
+                .setCountry("Japan")
+                .build();
+
+        dbHandler.create(sony);
+
+        Product product = new Product.Builder()
+                .setName("Playstation 1")
+                .setManufacturerId(sony.getId())
+                .setPrice(299.99)
+                .setDate("1994-12-03")
+                .build();
+
+        dbHandler.create(product);
+
+        assertThat(dbHandler.readAllManufacturersWherePriceLessThan(1.0)).isEmpty();
+
+        // Manufacturers created after index was built match without products
+        Manufacturer nintendo = new Manufacturer.Builder()
+                .setName("Nintendo")
+                .setCountry("Japan")
+                .build();
+
+        dbHandler.create(nintendo);
+
+        assertThat(dbHandler.readAllManufacturersWherePriceLessThan(1.0))
+                .extracting(Manufacturer::getName).containsExactly("Nintendo");
+
+        // Manufacturer whose last product is gone matches as well
+        dbHandler.delete(product);
+
+        assertThat(dbHandler.readAllManufacturersWherePriceLessThan(1.0))
+                .extracting(Manufacturer::getName).containsExactlyInAnyOrder("Sony", "Nintendo");
+
+        dbHandler.delete(nintendo);
+
+        assertThat(dbHandler.readAllManufacturersWherePriceLessThan(1.0))
+                .extracting(Manufacturer::getName).containsExactly("Sony");
+
+        // Products of manufacturer take it out of negative infinity bucket
+        dbHandler.create(product);
+
+        assertThat(dbHandler.readAllManufacturersWherePriceLessThan(1.0)).isEmpty();
+        assertThat(dbHandler.readAllManufacturersWherePriceLessThan(300.0))
+                .extracting(Manufacturer::getName).containsExactly("Sony");
+    }
+
+    // Log tests
+    @Test
+    public void testLoggedTablesReplayAndCompact() {
+
+        TableOptions options = new TableOptions.Builder()
+                .setResident(true)
+                .setLogged(true)
+                .build();
+        dbHandler = new DatabaseHandler(mfFile, pFFile, options);
+
+        Manufacturer manufacturer = new Manufacturer.Builder()
+                .setName("Sony")
+                .setCountry("Japan")
+                .build();
+
+        dbHandler.create(manufacturer);
+
+        Product product = new Product.Builder()
+                .setName("Playstation 1")
+                .setManufacturerId(manufacturer.getId())
+                .setPrice(299.99)
+                .setDate("1994-12-03")
+                .build();
+
+        dbHandler.create(product);
+
+        product.setPrice(199.99);
+        dbHandler.update(product);
+
+        assertThat(new File(pFFile + ".log")).exists();
+
+        // Another handler replays log on top of table file
+        DatabaseHandler otherHandler = new DatabaseHandler(mfFile, pFFile, options);
+        assertThat(otherHandler.readProductById(product.getId()).getPrice())
+                .isCloseTo(199.99, Offset.offset(10e-3));
+
+        dbHandler.compact();
+
+        assertThat(new File(pFFile + ".log")).doesNotExist();
+        otherHandler = new DatabaseHandler(mfFile, pFFile, options);
+        assertThat(otherHandler.readAllProducts()).hasSize(1);
+        assertThat(otherHandler.readProductById(product.getId()).getPrice())
+                .isCloseTo(199.99, Offset.offset(10e-3));
+    }
+
+    @Test
+    public void testCompactionWhilePinned() {
+
+        TableOptions options = new TableOptions.Builder()
+                .setResident(true)
+                .setLogged(true)
+                .build();
+        dbHandler = new DatabaseHandler(mfFile, pFFile, options);
+        dbHandler.create(new Manufacturer.Builder()
+                .setName("Sony")
+                .setCountry("Japan")
+                .build());
+
+        // Reader holds pin on cache of table
+        ManufacturerTableHandler table = new ManufacturerTableHandler(mfFile, options);
+        assertThat(table.loadAll()).hasSize(1);
+        assertThat(table.pin()).isTrue();
+
+        // Another handler appends to log, then background compaction of pinned table runs
+        DatabaseHandler otherHandler = new DatabaseHandler(mfFile, pFFile, options);
+        otherHandler.create(new Manufacturer.Builder()
+                .setName("Nintendo")
+                .setCountry("Japan")
+                .build());
+        table.compact();
+
+        // Pinned reader keeps its rows, log of other handler is kept
+        assertThat(table.loadAll()).hasSize(1);
+        assertThat(new File(mfFile + ".log")).exists();
+        assertThat(new DatabaseHandler(mfFile, pFFile, options).readAllManufacturers()).hasSize(2);
+
+        // Deferred compaction reloads files first once unpinned
+        table.unpin();
+        table.compact();
+        assertThat(new File(mfFile + ".log")).doesNotExist();
+        assertThat(new DatabaseHandler(mfFile, pFFile, options).readAllManufacturers())
+                .extracting(Manufacturer::getName)
+                .containsExactly("Sony", "Nintendo");
+    }
+
+    @Test
+    public void testConcurrentWritesWithCompaction() throws Exception {
+
+        for (boolean resident : new boolean[] {true, false}) {
+            deleteTables();
+            TableOptions options = new TableOptions.Builder()
+                    .setResident(resident)
+                    .setLogged(true)
+                    .setCompactionThreshold(1)
+                    .build();
+            DatabaseHandler handler = new DatabaseHandler(mfFile, pFFile, options);
+            Manufacturer sony = new Manufacturer.Builder()
+                    .setName("Sony")
+                    .setCountry("Japan")
+                    .build();
+            handler.create(sony);
+
+            // Every write schedules compaction, which rebuilds indexes used by name checks
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                int n = i;
+                futures.add(executor.submit(() -> handler.create(new Product.Builder()
+                        .setName("Playstation " + n % 50)
+                        .setManufacturerId(sony.getId())
+                        .setPrice(n)
+                        .setDate("1994-12-03")
+                        .build())));
+                futures.add(executor.submit(() -> handler.readAllProductsByYear("1994")));
+            }
+            for (Future<?> future : futures)
+                future.get();
+            executor.shutdown();
+
+            handler.compact();
+            assertThat(new DatabaseHandler(mfFile, pFFile, options).readAllProducts())
+                    .extracting(Product::getName)
+                    .hasSize(50)
+                    .doesNotHaveDuplicates();
+        }
+    }
+
+    @Test
+    public void testCorruptedLogRecords() throws IOException {
+
+        TableOptions options = new TableOptions.Builder()
+                .setResident(true)
+                .setLogged(true)
+                .build();
+        dbHandler = new DatabaseHandler(mfFile, pFFile, options);
+
+        Manufacturer sony = new Manufacturer.Builder()
+                .setName("Sony")
+                .setCountry("Japan")
+                .build();
+        dbHandler.create(sony);
+
+        // Record cut short by crash during append is skipped
+        Files.writeString(Paths.get(mfFile + ".log"), "P {\"id\":99,\"na", StandardOpenOption.APPEND);
+        DatabaseHandler otherHandler = new DatabaseHandler(mfFile, pFFile, options);
+        assertThat(otherHandler.readAllManufacturers()).extracting(Manufacturer::getName).containsExactly("Sony");
+
+        // and dropped by next append
+        otherHandler.create(new Manufacturer.Builder()
+                .setName("Nintendo")
+                .setCountry("Japan")
+                .build());
+        otherHandler = new DatabaseHandler(mfFile, pFFile, options);
+        assertThat(otherHandler.readAllManufacturers()).extracting(Manufacturer::getName)
+                .containsExactly("Sony", "Nintendo");
+
+        // Corrupted record followed by others is an error
+        Files.writeString(Paths.get(mfFile + ".log"), "P {\"id\":99,\"na\n"
+                + Files.readString(Paths.get(mfFile + ".log")));
+        DatabaseHandler corruptedHandler = new DatabaseHandler(mfFile, pFFile, options);
+        assertThatThrownBy(corruptedHandler::readAllManufacturers)
+                .isInstanceOf(UncheckedIOException.class)
+                .hasMessageContaining("Corrupted record 1");
+    }
+
+    // Bulk tests
+    @Test
+    public void testCreateAllProducts() {
+
+        Manufacturer sony = new Manufacturer.Builder()
+                .setName("Sony")
+                .setCountry("Japan")
+                .build();
+        Manufacturer duplicate = new Manufacturer.Builder()
+                .setName("Sony")
+                .setCountry("Korea")
+                .build();
+
+        BulkReport<Manufacturer> manufacturerReport
+                = dbHandler.createAllManufacturers(List.of(sony, duplicate));
+
+        assertThat(manufacturerReport.getAccepted()).containsExactly(sony);
+        assertThat(manufacturerReport.getRejected())
+                .extracting(BulkReport.Rejection::reason)
+                .containsExactly(BulkReport.Reason.DUPLICATE_NAME);
+
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            products.add(new Product.Builder()
+                    .setName("Playstation " + i)
+                    .setManufacturerId(sony.getId())
+                    .setPrice(299.99)
+                    .setDate("1994-12-03")
+                    .build());
+        products.add(new Product.Builder()
+                .setName("Playstation 0")
+                .setManufacturerId(sony.getId())
+                .setPrice(299.99)
+                .setDate("1994-12-03")
+                .build());
+        products.add(new Product.Builder()
+                .setName("Game Boy")
+                .setManufacturerId(sony.getId() + 1)
+                .setPrice(99.99)
+                .setDate("1989-04-21")
+                .build());
+
+        BulkReport<Product> productReport = dbHandler.createAllProducts(products);
+
+        assertThat(productReport.getAccepted()).hasSize(100);
+        assertThat(productReport.getRejected())
+                .extracting(BulkReport.Rejection::reason)
+                .containsExactly(BulkReport.Reason.DUPLICATE_NAME, BulkReport.Reason.MISSING_MANUFACTURER);
+        assertThat(dbHandler.readAllManufacturerProducts(sony)).hasSize(100);
+
+        // Non resident tables are loaded once for checks of whole batch, products
+        // once more for insert
+        DatabaseHandler nonResident = new DatabaseHandler(mfFile, pFFile, false);
+        List<Product> more = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+            more.add(new Product.Builder()
+                    .setName("Walkman " + i)
+                    .setManufacturerId(sony.getId())
+                    .setPrice(99.99)
+                    .setDate("1979-07-01")
+                    .build());
+        QueryProfile profile = nonResident.explain(() -> nonResident.createAllProducts(more));
+
+        assertThat(profile.getStages())
+                .filteredOn(stage -> stage.getOperation().equals("load file"))
+                .extracting(QueryProfile.Stage::getTable)
+                .containsExactly(mfFile, pFFile, pFFile);
+        assertThat(dbHandler.readAllManufacturerProducts(sony)).hasSize(150);
+    }
+
+    @Test
+    public void testConcurrentCreates() throws Exception {
+
+        Manufacturer sony = new Manufacturer.Builder()
+                .setName("Sony")
+                .setCountry("Japan")
+                .build();
+
+        dbHandler.create(sony);
+
+        // Writers race on name checks and saves while readers query indexes
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int n = i;
+            futures.add(executor.submit(() -> dbHandler.create(new Product.Builder()
+                    .setName("Playstation " + n % 100)
+                    .setManufacturerId(sony.getId())
+                    .setPrice(n)
+                    .setDate("1994-12-03")
+                    .build())));
+            futures.add(executor.submit(() -> {
+                dbHandler.readAllProductsByCountry("Japan");
+                dbHandler.readAllManufacturersWherePriceLessThan(50);
+            }));
+        }
+        for (Future<?> future : futures)
+            future.get();
+        executor.shutdown();
+
+        // Every name is created once, no insert is lost
+        assertThat(dbHandler.readAllProducts()).hasSize(100);
+        assertThat(new DatabaseHandler(mfFile, pFFile).readAllProducts()).hasSize(100);
+    }
+
+    @Test
+    public void testSharedTableFiles() {
+
+        // Handlers with own caches stand in for processes sharing files
+        DatabaseHandler otherHandler = new DatabaseHandler(mfFile, pFFile);
+
+        for (int i = 0; i < 20; i++) {
+            DatabaseHandler handler = i % 2 == 0 ? dbHandler : otherHandler;
+            handler.create(new Manufacturer.Builder()
+                    .setName("Manufacturer " + i)
+                    .setCountry("Japan")
+                    .build());
+        }
+
+        assertThat(dbHandler.readAllManufacturers()).hasSize(20);
+        assertThat(otherHandler.readAllManufacturers()).hasSize(20);
+        // Saves go through temporary file renamed over table
+        assertThat(new File(mfFile + ".tmp")).doesNotExist();
+    }
+
+    @Test
+    public void testFailedSave() throws IOException {
+
+        dbHandler.create(new Manufacturer.Builder()
+                .setName("Sony")
+                .setCountry("Japan")
+                .build());
+
+        // Temporary file can't be created in place of non empty directory
+        Path temporary = Paths.get(mfFile + ".tmp");
+        Files.createDirectories(temporary.resolve("blocked"));
+        try {
+            assertThatThrownBy(() -> dbHandler.create(new Manufacturer.Builder()
+                    .setName("Nintendo")
+                    .setCountry("Japan")
+                    .build()))
+                    .isInstanceOf(UncheckedIOException.class);
+
+            // Rows which weren't saved aren't served from cache either
+            assertThat(dbHandler.readAllManufacturers()).extracting(Manufacturer::getName)
+                    .containsExactly("Sony");
+            assertThat(dbHandler.readManufacturerByName("Nintendo")).isNull();
+        } finally {
+            Files.delete(temporary.resolve("blocked"));
+            Files.delete(temporary);
+        }
+    }
+
+    @Test
+    public void testSnapshotIsolation() {
+
+        Manufacturer sony = new Manufacturer.Builder()
+                .setName("Sony")
+                .setCountry("Japan")
+                .build();
+
+        dbHandler.create(sony);
+
+        dbHandler.create(new Product.Builder()
+                .setName("Playstation 1")
+                .setManufacturerId(sony.getId())
+                .setPrice(299.99)
+                .setDate("1994-12-03")
+                .build());
+
+        Snapshot snapshot = dbHandler.snapshot();
+        // Reused while nothing changes
+        assertThat(dbHandler.snapshot()).isSameAs(snapshot);
+
+        dbHandler.create(new Product.Builder()
+                .setName("Playstation 2")
+                .setManufacturerId(sony.getId())
+                .setPrice(299.99)
+                .setDate("2000-03-04")
+                .build());
+        dbHandler.deleteManufacturerAndAllProducts(sony);
+
+        // Old snapshot still sees tables before writes
+        assertThat(snapshot.readAllProducts()).hasSize(1);
+        assertThat(snapshot.readAllManufacturerProductsMap().values())
+                .extracting(List::size)
+                .containsExactly(1);
+        assertThat(snapshot.readAllProductManufacturerMap(OrphanPolicy.FAIL)).hasSize(1);
+
+        // Copies are handed out
+        snapshot.readAllProducts().get(0).setName("Changed");
+        assertThat(snapshot.readAllProducts().get(0).getName()).isEqualTo("Playstation 1");
+
+        Snapshot current = dbHandler.snapshot();
+        assertThat(current).isNotSameAs(snapshot);
+        assertThat(current.readAllManufacturers()).isEmpty();
+        assertThat(current.readAllProducts()).isEmpty();
+    }
+
+    @Test
+    public void testGeneratedIds() throws IllegalAccessException, IOException {
+
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Manufacturer manufacturer = new Manufacturer.Builder()
+                    .setName("Manufacturer " + i)
+                    .setCountry("Japan")
+                    .build();
+            dbHandler.create(manufacturer);
+            ids.add(manufacturer.getId());
+        }
+
+        // Dense and increasing within reserved block
+        assertThat(ids).containsExactly(ids.get(0), ids.get(0) + 1, ids.get(0) + 2);
+
+        // Other handler continues after reserved block
+        Manufacturer other = new Manufacturer.Builder()
+                .setName("Other")
+                .setCountry("Japan")
+                .build();
+        new DatabaseHandler(mfFile, pFFile).create(other);
+        assertThat(other.getId()).isEqualTo(ids.get(0) + IdAllocator.BLOCK_SIZE);
+
+        // Ids of rows saved with own ids are skipped
+        deleteFileIfExists(mfFile + ".seq");
+        DatabaseHandler restarted = new DatabaseHandler(mfFile, pFFile);
+        Manufacturer next = new Manufacturer.Builder()
+                .setName("Next")
+                .setCountry("Japan")
+                .build();
+        restarted.create(next);
+        assertThat(next.getId()).isEqualTo(4);
+
+        // Corrupted sequence is an error, not restarted from first id
+        Files.writeString(Paths.get(mfFile + ".seq"), "garbage");
+        Manufacturer corrupted = new Manufacturer.Builder()
+                .setName("Corrupted")
+                .setCountry("Japan")
+                .build();
+        assertThatThrownBy(() -> new DatabaseHandler(mfFile, pFFile).create(corrupted))
+                .isInstanceOf(UncheckedIOException.class)
+                .hasMessageContaining("Corrupted id sequence");
+    }
+
+    @Test
+    public void testUniqueNameIndexes() {
+
+        Manufacturer sony = new Manufacturer.Builder()
+                .setName("Sony")
+                .setCountry("Japan")
+                .build();
+
+        dbHandler.create(sony);
+
+        // Own name doesn't block update of other fields
+        sony.setCountry("USA");
+        dbHandler.update(sony);
+        assertThat(dbHandler.readManufacturerByName("Sony").getCountry()).isEqualTo("USA");
+
+        // Renamed manufacturer is found by new name only, old name is free again
+        sony.setName("Sony Interactive");
+        dbHandler.update(sony);
+        assertThat(dbHandler.readManufacturerByName("Sony")).isNull();
+        assertThat(dbHandler.readManufacturerByName("Sony Interactive").getId()).isEqualTo(sony.getId());
+
+        Manufacturer other = new Manufacturer.Builder()
+                .setName("Sony")
+                .setCountry("Japan")
+                .build();
+        dbHandler.create(other);
+        assertThat(dbHandler.readAllManufacturers()).hasSize(2);
+
+        Product playstation = new Product.Builder()
+                .setName("Playstation 1")
+                .setManufacturerId(sony.getId())
+                .setPrice(299.99)
+                .setDate("1994-12-03")
+                .build();
+        dbHandler.create(playstation);
+
+        // Same name is unique per manufacturer
+        Product copy = new Product.Builder()
+                .setName("Playstation 1")
+                .setManufacturerId(other.getId())
+                .setPrice(299.99)
+                .setDate("1994-12-03")
+                .build();
+        dbHandler.create(copy);
+        assertThat(dbHandler.readAllProducts()).hasSize(2);
+
+        copy.setManufacturerId(sony.getId());
+        dbHandler.update(copy);
+        assertThat(dbHandler.readProductById(copy.getId()).getManufacturerId()).isEqualTo(other.getId());
+
+        // Deleted product frees its name
+        dbHandler.delete(playstation);
+        dbHandler.update(copy);
+        assertThat(dbHandler.readProductById(copy.getId()).getManufacturerId()).isEqualTo(sony.getId());
+    }
+
+    @Test
+    public void testDeleteAll() {
+
+        Manufacturer sony = new Manufacturer.Builder()
+                .setName("Sony")
+                .setCountry("Japan")
+                .build();
+        Manufacturer nintendo = new Manufacturer.Builder()
+                .setName("Nintendo")
+                .setCountry("Japan")
+                .build();
+
+        dbHandler.createAllManufacturers(List.of(sony, nintendo));
+
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+            products.add(new Product.Builder()
+                    .setName("Playstation " + i)
+                    .setManufacturerId(sony.getId())
+                    .setPrice(299.99)
+                    .setDate("1994-12-03")
+                    .build());
+        Product gameBoy = new Product.Builder()
+                .setName("Game Boy")
+                .setManufacturerId(nintendo.getId())
+                .setPrice(99.99)
+                .setDate("1989-04-21")
+                .build();
+        products.add(gameBoy);
+
+        dbHandler.createAllProducts(products);
+
+        dbHandler.deleteAll(products.subList(0, 20));
+        assertThat(dbHandler.readAllManufacturerProducts(sony)).hasSize(30);
+
+        dbHandler.deleteManufacturerAndAllProducts(sony);
+
+        DatabaseHandler otherHandler = new DatabaseHandler(mfFile, pFFile);
+        assertThat(otherHandler.readAllManufacturers()).extracting(Manufacturer::getName).containsExactly("Nintendo");
+        assertThat(otherHandler.readAllProducts()).extracting(Product::getId).containsExactly(gameBoy.getId());
+    }
+
+    @Test
+    public void testQuery() {
+
+        Manufacturer sony = new Manufacturer.Builder()
+                .setName("Sony")
+                .setCountry("Japan")
+                .build();
+        Manufacturer nintendo = new Manufacturer.Builder()
+                .setName("Nintendo")
+                .setCountry("Japan")
+                .build();
+        Manufacturer microsoft = new Manufacturer.Builder()
+                .setName("Microsoft")
+                .setCountry("USA")
+                .build();
+
+        dbHandler.createAllManufacturers(List.of(sony, nintendo, microsoft));
+
+        dbHandler.createAllProducts(List.of(
+                new Product.Builder().setName("Playstation 2").setManufacturerId(sony.getId())
+                        .setPrice(299.99).setDate("2000-03-04").build(),
+                new Product.Builder().setName("Game Boy Advance").setManufacturerId(nintendo.getId())
+                        .setPrice(99.99).setDate("2001-03-21").build(),
+                new Product.Builder().setName("GameCube").setManufacturerId(nintendo.getId())
+                        .setPrice(199.99).setDate("2001-09-14").build(),
+                new Product.Builder().setName("Xbox").setManufacturerId(microsoft.getId())
+                        .setPrice(299.99).setDate("2001-11-15").build(),
+                new Product.Builder().setName("Playstation 1").setManufacturerId(sony.getId())
+                        .setPrice(299.99).setDate("1994-12-03").build()));
+
+        // Country, year and price range together
+        ProductQuery query = new ProductQuery.Builder()
+                .setCountry("Japan")
+                .setYear(2001)
+                .setPriceRange(100, 300)
+                .build();
+        assertThat(dbHandler.query(query)).extracting(Product::getName).containsExactly("GameCube");
+
+        // Ordering and limit
+        query = new ProductQuery.Builder()
+                .setPriceRange(150, 300)
+                .setOrder(ProductQuery.Order.DATE)
+                .setDescending(true)
+                .setLimit(2)
+                .build();
+        assertThat(dbHandler.query(query)).extracting(Product::getName).containsExactly("Xbox", "GameCube");
+
+        query = new ProductQuery.Builder()
+                .setOrder(ProductQuery.Order.NAME)
+                .setLimit(3)
+                .build();
+        assertThat(dbHandler.query(query)).extracting(Product::getName)
+                .containsExactly("Game Boy Advance", "GameCube", "Playstation 1");
+
+        // Name and manufacturer use unique index, unknown names match nothing
+        query = new ProductQuery.Builder()
+                .setManufacturerId(sony.getId())
+                .setName("Playstation 1")
+                .build();
+        assertThat(dbHandler.query(query)).extracting(Product::getDate).containsExactly("1994-12-03");
+        query = new ProductQuery.Builder()
+                .setName("Dreamcast")
+                .build();
+        assertThat(dbHandler.query(query)).isEmpty();
+
+        // Projection on manufacturers and join
+        query = new ProductQuery.Builder()
+                .setYear(2001)
+                .build();
+        assertThat(dbHandler.queryManufacturers(query)).extracting(Manufacturer::getName)
+                .containsExactly("Nintendo", "Microsoft");
+        assertThat(dbHandler.queryWithManufacturers(query).values()).extracting(Manufacturer::getName)
+                .containsExactly("Nintendo", "Nintendo", "Microsoft");
+    }
+
+    @Test
+    public void testExplain() {
+
+        Manufacturer sony = new Manufacturer.Builder()
+                .setName("Sony")
+                .setCountry("Japan")
+                .build();
+
+        dbHandler.create(sony);
+
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            products.add(new Product.Builder()
+                    .setName("Playstation " + i)
+                    .setManufacturerId(sony.getId())
+                    .setPrice(299.99)
+                    .setDate((1994 + i) + "-12-03")
+                    .build());
+        dbHandler.createAllProducts(products);
+
+        // Fresh handler loads files during query
+        DatabaseHandler otherHandler = new DatabaseHandler(mfFile, pFFile);
+        ProductQuery query = new ProductQuery.Builder()
+                .setYear(2000)
+                .build();
+        QueryProfile profile = otherHandler.explain(() -> otherHandler.queryWithManufacturers(query));
+
+        // Products are loaded before planning, manufacturers inside join which needs them
+        List<QueryProfile.Stage> stages = profile.getStages();
+        assertThat(stages).extracting(QueryProfile.Stage::getOperation)
+                .containsExactly("load file", "DATE_INDEX", "primary key lookup", "load file");
+        assertThat(stages).extracting(QueryProfile.Stage::getDepth)
+                .containsExactly(0, 0, 0, 1);
+        assertThat(stages.get(0).getFilesLoaded()).isEqualTo(1);
+        assertThat(stages.get(0).getBytesParsed()).isEqualTo(new File(pFFile).length());
+        assertThat(stages.get(0).getRowsReturned()).isEqualTo(10);
+        assertThat(stages.get(1).getRowsExamined()).isEqualTo(1);
+        assertThat(stages.get(1).getRowsReturned()).isEqualTo(1);
+        assertThat(profile.toString()).contains("DATE_INDEX");
+
+        // Resident tables are not loaded again
+        profile = otherHandler.explain(() -> otherHandler.query(query));
+        assertThat(profile.getStages()).extracting(QueryProfile.Stage::getOperation)
+                .containsExactly("DATE_INDEX");
+    }
+
+
+    @Test
+    public void testPaging() {
+
+        Manufacturer sony = new Manufacturer.Builder()
+                .setName("Sony")
+                .setCountry("Japan")
+                .build();
+        Manufacturer microsoft = new Manufacturer.Builder()
+                .setName("Microsoft")
+                .setCountry("USA")
+                .build();
+        dbHandler.createAllManufacturers(List.of(sony, microsoft));
+
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 25; i++)
+            products.add(new Product.Builder().setName("Product " + i)
+                    .setManufacturerId(i % 2 == 0 ? sony.getId() : microsoft.getId())
+                    .setPrice(i).setDate("2001-01-01").build());
+        dbHandler.createAllProducts(products);
+        List<Long> ids = products.stream().map(Product::getId).sorted().toList();
+
+        // Pages continue after last id read
+        List<Product> page = dbHandler.readProductsAfter(Long.MIN_VALUE, 10);
+        assertThat(page).extracting(Product::getId).containsExactlyElementsOf(ids.subList(0, 10));
+        page = dbHandler.readProductsAfter(page.get(9).getId(), 10);
+        assertThat(page).extracting(Product::getId).containsExactlyElementsOf(ids.subList(10, 20));
+
+        // Deleting rows already read doesn't shift next page
+        dbHandler.delete(page.get(0));
+        page = dbHandler.readProductsAfter(page.get(9).getId(), 10);
+        assertThat(page).extracting(Product::getId).containsExactlyElementsOf(ids.subList(20, 25));
+
+        assertThat(dbHandler.streamProducts(7)).hasSize(24);
+        assertThat(dbHandler.streamManufacturers(1)).extracting(Manufacturer::getName)
+                .containsExactly("Sony", "Microsoft");
+
+        // Query stream filters every page and limits whole stream
+        ProductQuery query = new ProductQuery.Builder()
+                .setManufacturerId(sony.getId())
+                .setLimit(8)
+                .build();
+        assertThat(dbHandler.streamProducts(query, 3))
+                .hasSize(8)
+                .allMatch(product -> product.getManufacturerId() == sony.getId())
+                .extracting(Product::getId).isSorted();
+
+        // Cursor token resumes where earlier cursor stopped
+        Cursor<Product> cursor = new Cursor<>(dbHandler::readProductsAfter, 4);
+        cursor.stream().limit(5).forEach(product -> {});
+        assertThat(new Cursor<>(dbHandler::readProductsAfter, 4, cursor.getAfterId()).stream())
+                .extracting(Product::getId)
+                .containsExactlyElementsOf(dbHandler.readProductsAfter(ids.get(4), 100).stream()
+                        .map(Product::getId).toList());
+
+        assertThatThrownBy(() -> new Cursor<>(dbHandler::readProductsAfter, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        // Pages seek to afterId, only rows of page are examined
+        QueryProfile profile = dbHandler.explain(() -> dbHandler.readProductsAfter(ids.get(4), 3));
+        assertThat(profile.getStages()).extracting(QueryProfile.Stage::getRowsExamined)
+                .containsExactly(3L);
+
+        // Unindexed predicates are checked in id order until page is full
+        ProductQuery priced = new ProductQuery.Builder()
+                .setPriceRange(0, 100)
+                .build();
+        profile = dbHandler.explain(() -> dbHandler.streamProducts(priced, 3).limit(3).forEach(product -> {}));
+        assertThat(profile.getStages())
+                .extracting(QueryProfile.Stage::getOperation, QueryProfile.Stage::getRowsExamined)
+                .containsExactly(tuple("ID_INDEX", 3L));
+
+        // Updated rows keep their place in id order
+        Product updated = products.get(1);
+        updated.setPrice(1000);
+        dbHandler.update(updated);
+        assertThat(dbHandler.readProductsAfter(Long.MIN_VALUE, 100))
+                .extracting(Product::getId)
+                .hasSize(24)
+                .doesNotHaveDuplicates()
+                .isSorted();
+    }
+
+    @Test
+    public void testInvalidRows() throws IOException {
+
+        Files.writeString(Paths.get(mfFile), "[{\"id\":1,\"name\":\"Sony\",\"country\":\"Japan\"}]");
+        Files.writeString(Paths.get(pFFile), "["
+                + "{\"id\":1,\"name\":\"Playstation 1\",\"manufacturerId\":1,\"date\":\"1994-12-03\",\"price\":299.99},"
+                + "{\"id\":2,\"name\":\"Playstation 2\",\"manufacturerId\":1,\"date\":\"2000/03/04\",\"price\":299.99},"
+                + "{\"id\":3,\"name\":\"Playstation 3\",\"manufacturerId\":1,\"price\":499.99}]");
+        String table = Files.readString(Paths.get(pFFile));
+
+        // Valid rows are still queried, invalid ones are reported by id
+        assertThat(dbHandler.readAllProducts()).extracting(Product::getId).containsExactly(1L);
+        assertThat(dbHandler.readInvalidRows()).containsExactly(
+                "Product 2 has invalid date '2000/03/04'",
+                "Product 3 has no date");
+
+        // Rewriting table would drop them
+        Product product = new Product.Builder()
+                .setName("Playstation 4")
+                .setManufacturerId(1)
+                .setDate("2013-11-15")
+                .setPrice(399.99)
+                .build();
+        assertThatThrownBy(() -> dbHandler.create(product)).isInstanceOf(IllegalStateException.class);
+        assertThat(Files.readString(Paths.get(pFFile))).isEqualTo(table);
+        assertThat(dbHandler.readAllProducts()).hasSize(1);
+
+        // Dropping them makes table writable again
+        assertThat(dbHandler.dropInvalidRows()).hasSize(2);
+        assertThat(dbHandler.readInvalidRows()).isEmpty();
+        dbHandler.create(product);
+        assertThat(new DatabaseHandler(mfFile, pFFile).readAllProducts())
+                .extracting(Product::getName)
+                .containsExactly("Playstation 1", "Playstation 4");
+    }
+
+    @Test
+    public void testDuplicateNamesOfOldFiles() throws IOException {
+
+        Files.writeString(Paths.get(mfFile), "["
+                + "{\"id\":1,\"name\":\"Sony\",\"country\":\"Japan\"},"
+                + "{\"id\":2,\"name\":\"Sony\",\"country\":\"USA\"}]");
+        dbHandler = new DatabaseHandler(mfFile, pFFile, true);
+
+        // Name stays taken while any manufacturer with it is left
+        dbHandler.delete(dbHandler.readManufacturerById(1));
+        assertThat(dbHandler.readManufacturerByName("Sony").getId()).isEqualTo(2);
+
+        dbHandler.create(new Manufacturer.Builder()
+                .setName("Sony")
+                .setCountry("Japan")
+                .build());
+        assertThat(dbHandler.readAllManufacturers()).extracting(Manufacturer::getId).containsExactly(2L);
+
+        dbHandler.delete(dbHandler.readManufacturerById(2));
+        assertThat(dbHandler.readManufacturerByName("Sony")).isNull();
+    }
+
+    @Test
+    public void testDictionaryRebuild() {
+
+        TableOptions options = new TableOptions.Builder()
+                .setResident(true)
+                .build();
+        ProductTableHandler table = new ProductTableHandler(pFFile, options);
+
+        Product product = new Product.Builder()
+                .setId(1)
+                .setName("Name 0")
+                .setManufacturerId(1)
+                .setPrice(1)
+                .setDate("2001-01-01")
+                .build();
+        table.insert(product);
+
+        // Old names of renamed product are dropped from dictionary by rebuilds
+        for (int i = 1; i <= 5000; i++) {
+            product.setName("Name " + i);
+            table.update(product);
+        }
+        assertThat(table.dictionary().size()).isLessThanOrEqualTo(2 + 1024 + 1);
+        assertThat(table.loadIdByNameAndManufacturer("Name 5000", 1)).isEqualTo(1L);
+        assertThat(table.loadIdByNameAndManufacturer("Name 4999", 1)).isNull();
+        assertThat(table.loadById(1).getName()).isEqualTo("Name 5000");
+
+        // Reload starts with strings of rows only
+        ProductTableHandler reloaded = new ProductTableHandler(pFFile, options);
+        assertThat(reloaded.loadAll()).hasSize(1);
+        assertThat(reloaded.dictionary().size()).isEqualTo(1);
+    }
 }
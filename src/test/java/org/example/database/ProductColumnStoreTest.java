@@ -0,0 +1,90 @@
+package org.example.database;
+
+import org.example.entity.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ProductColumnStoreTest {
+
+    private static Product product(long id, String name) {
+        return new Product.Builder()
+                .setId(id)
+                .setName(name)
+                .setManufacturerId(id % 3)
+                .setDate("2000-12-12")
+                .setPrice(id / 2.0)
+                .build();
+    }
+
+    @Test
+    public void testPutLoadRemove() {
+
+        ProductColumnStore store = new ProductColumnStore(0);
+
+        store.put(product(1, "Mug"));
+        store.put(product(2, "Mug"));
+        Product previous = store.put(product(1, "Keychain"));
+
+        assertThat(previous.getName()).isEqualTo("Mug");
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.load(1).toJSON()).isEqualTo(product(1, "Keychain").toJSON());
+        // Same name stored once
+        assertThat(store.names().size()).isEqualTo(2);
+
+        assertThat(store.remove(2).getName()).isEqualTo("Mug");
+        assertThat(store.contains(2)).isFalse();
+        assertThat(store.load(2)).isNull();
+    }
+
+    @Test
+    public void testReclaimRemovedPositions() {
+
+        ProductColumnStore store = new ProductColumnStore(0);
+
+        for (long id = 0; id < 1_000; id++) {
+            store.put(product(id, "Product " + id % 10));
+            // Keep only every tenth product
+            if (id % 10 != 0)
+                store.remove(id);
+        }
+
+        List<Product> products = store.loadAll();
+
+        assertThat(products).hasSize(100);
+        assertThat(products.get(0).getId()).isEqualTo(0L);
+        assertThat(products.get(99).getId()).isEqualTo(990L);
+        assertThat(store.positionLimit()).isLessThan(1_000);
+        for (Product product : products)
+            assertThat(store.load(product.getId()).toJSON()).isEqualTo(product.toJSON());
+    }
+
+    @Test
+    public void testFreeze() {
+
+        ProductColumnStore store = new ProductColumnStore(0);
+        for (long id = 0; id < 10; id++)
+            store.put(product(id, "Product " + id));
+
+        RowStore<Product> frozen = store.freeze();
+
+        store.put(product(3, "Changed"));
+        store.remove(4);
+        // Grows columns and dictionary
+        for (long id = 10; id < 100; id++)
+            store.put(product(id, "Product " + id));
+
+        assertThat(frozen.size()).isEqualTo(10);
+        assertThat(frozen.load(3).getName()).isEqualTo("Product 3");
+        assertThat(frozen.contains(4)).isTrue();
+        assertThat(frozen.contains(50)).isFalse();
+        assertThat(frozen.loadAll()).extracting(Product::getName).last().isEqualTo("Product 9");
+        assertThat(store.load(3).getName()).isEqualTo("Changed");
+        assertThat(store.size()).isEqualTo(99);
+        assertThatThrownBy(() -> frozen.put(product(5, "Mug")))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+}
@@ -0,0 +1,271 @@
+package org.example.database;
+
+import org.example.binary.StringDictionary;
+import org.example.entity.Manufacturer;
+import org.example.entity.Product;
+import org.example.factory.ManufacturerFactory;
+import org.example.factory.ProductFactory;
+import org.example.json.JsonArraySplitter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TableFormatTest {
+
+    private static final String mfFile = "manufacturers_test.bin";
+    private static final String pdFile = "products_test.bin";
+    private static final String jsonFile = "products_test_converted.json";
+    private static final String sourceFile = "products_test_source.json";
+
+    @BeforeEach
+    @AfterEach
+    public void deleteTables() throws IllegalAccessException {
+        DatabaseTest.deleteFileIfExists(mfFile);
+        DatabaseTest.deleteFileIfExists(pdFile);
+        DatabaseTest.deleteFileIfExists(jsonFile);
+        DatabaseTest.deleteFileIfExists(sourceFile);
+        DatabaseTest.deleteFileIfExists(mfFile + ".lock");
+        DatabaseTest.deleteFileIfExists(pdFile + ".lock");
+        DatabaseTest.deleteFileIfExists(mfFile + ".seq");
+        DatabaseTest.deleteFileIfExists(pdFile + ".seq");
+    }
+
+    @Test
+    public void testBinaryTables() {
+
+        TableOptions options = new TableOptions.Builder()
+                .setResident(true)
+                .setFormat(TableFormat.BINARY)
+                .build();
+        DatabaseHandler dbHandler = new DatabaseHandler(mfFile, pdFile, options);
+
+        Manufacturer manufacturer = new Manufacturer.Builder()
+                .setName("Sony")
+                .setCountry("日本")
+                .build();
+
+        dbHandler.create(manufacturer);
+
+        Product product = new Product.Builder()
+                .setName("Playstation 1")
+                .setManufacturerId(manufacturer.getId())
+                .setPrice(299.99)
+                .setDate("1994-12-03")
+                .build();
+
+        dbHandler.create(product);
+
+        // Fresh handler reads binary files
+        DatabaseHandler otherHandler = new DatabaseHandler(mfFile, pdFile, options);
+
+        assertThat(otherHandler.readManufacturerById(manufacturer.getId()).getCountry()).isEqualTo("日本");
+        assertThat(otherHandler.readProductById(product.getId()).toJSON()).isEqualTo(product.toJSON());
+    }
+
+    @Test
+    public void testMappedTables() throws IllegalAccessException {
+
+        for (TableFormat format : List.of(TableFormat.JSON, TableFormat.BINARY)) {
+            deleteTables();
+            TableOptions options = new TableOptions.Builder()
+                    .setFormat(format)
+                    .setMapped(true)
+                    .build();
+            DatabaseHandler dbHandler = new DatabaseHandler(mfFile, pdFile, options);
+
+            Manufacturer manufacturer = new Manufacturer.Builder()
+                    .setName("Sony " + format)
+                    .setCountry("Japan")
+                    .build();
+
+            dbHandler.create(manufacturer);
+
+            assertThat(dbHandler.readManufacturerById(manufacturer.getId()).getName())
+                    .isEqualTo("Sony " + format);
+        }
+    }
+
+    @Test
+    public void testConvertTable() throws IOException {
+
+        List<Product> products = List.of(
+                new Product.Builder().setId(1).setName("Playstation 1").setManufacturerId(1)
+                        .setPrice(299.99).setDate("1994-12-03").build(),
+                new Product.Builder().setId(2).setName("Кафе \"Ёлка\"").setManufacturerId(2)
+                        .setPrice(0.5).setDate("2001-01-01").build(),
+                new Product.Builder().setId(3).setName("Playstation 1").setManufacturerId(3)
+                        .setPrice(99).setDate("1970-01-01").build());
+        try (OutputStream out = Files.newOutputStream(Paths.get(sourceFile))) {
+            TableFormat.JSON.write(out, products, products.size());
+        }
+
+        TableConverter.convert(sourceFile, TableFormat.JSON, pdFile, TableFormat.BINARY, new ProductFactory());
+        TableConverter.convert(pdFile, TableFormat.BINARY, jsonFile, TableFormat.JSON, new ProductFactory());
+
+        List<Product> original = read(sourceFile);
+        List<Product> converted = read(jsonFile);
+
+        assertThat(converted).hasSameSizeAs(original);
+        for (int i = 0; i < original.size(); i++)
+            assertThat(converted.get(i).toJSON()).isEqualTo(original.get(i).toJSON());
+
+        // Invalid rows fail conversion, target is left as it was
+        Files.writeString(Paths.get(sourceFile), "["
+                + "{\"id\":1,\"name\":\"Playstation 1\",\"manufacturerId\":1,\"date\":\"1994-12-03\",\"price\":299.99},"
+                + "{\"id\":2,\"name\":\"Playstation 2\",\"manufacturerId\":1,\"date\":\"2000/03/04\",\"price\":299.99}]");
+        assertThatThrownBy(() -> TableConverter.convert(sourceFile, TableFormat.JSON, jsonFile, TableFormat.JSON,
+                new ProductFactory()))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Product 2");
+        assertThat(read(jsonFile)).hasSize(3);
+        assertThat(new File(jsonFile + ".tmp")).doesNotExist();
+
+        // Records of log would be lost
+        Files.writeString(Paths.get(pdFile + ".log"), "D 1\n");
+        assertThatThrownBy(() -> TableConverter.convert(pdFile, TableFormat.BINARY, jsonFile, TableFormat.JSON,
+                new ProductFactory()))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("compact");
+        Files.delete(Paths.get(pdFile + ".log"));
+    }
+
+    @Test
+    public void testDictionaryEncodedStrings() throws IOException {
+
+        List<Manufacturer> manufacturers = List.of(
+                new Manufacturer.Builder().setId(1).setName("Sony").setCountry("Japan").build(),
+                new Manufacturer.Builder().setId(2).setName("Nintendo").setCountry("Japan").build(),
+                new Manufacturer.Builder().setId(3).setName("Apple").setCountry(null).build());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TableFormat.BINARY.write(out, manufacturers, manufacturers.size());
+
+        // Header, dictionary of Sony, Japan, Nintendo, Apple, then records of id and two codes
+        int dictionaryBytes = Integer.BYTES + 4 * Integer.BYTES + "SonyJapanNintendoApple".length();
+        int recordBytes = 3 * (Integer.BYTES + Long.BYTES + 2 * Integer.BYTES);
+        assertThat(out.size()).isEqualTo(3 * Integer.BYTES + dictionaryBytes + recordBytes);
+
+        // Repeated countries are read as one interned string
+        ManufacturerFactory factory = new ManufacturerFactory(new StringDictionary());
+        List<Manufacturer> read = TableFormat.BINARY.read(ByteBuffer.wrap(out.toByteArray()), factory);
+        assertThat(read).extracting(Manufacturer::getName).containsExactly("Sony", "Nintendo", "Apple");
+        assertThat(read.get(0).getCountry()).isSameAs(read.get(1).getCountry());
+        assertThat(read.get(2).getCountry()).isNull();
+        assertThat(factory.getDictionary().size()).isEqualTo(4);
+    }
+
+    @Test
+    public void testReadInlineStringsVersion() throws IOException {
+
+        // Version 1 file with strings inside records
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(BinaryTableFormat.MAGIC);
+        out.writeInt(BinaryTableFormat.VERSION_INLINE_STRINGS);
+        out.writeInt(1);
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        new Manufacturer.Builder().setId(7).setName("Sony").setCountry("Japan").build()
+                .writeBinary(new DataOutputStream(recordBytes), null);
+        out.writeInt(recordBytes.size());
+        recordBytes.writeTo(out);
+
+        List<Manufacturer> read = TableFormat.BINARY.read(ByteBuffer.wrap(bytes.toByteArray()), new ManufacturerFactory());
+        assertThat(read).hasSize(1);
+        assertThat(read.get(0).getId()).isEqualTo(7);
+        assertThat(read.get(0).getCountry()).isEqualTo("Japan");
+    }
+
+    @Test
+    public void testCorruptedRecordLength() throws IOException {
+
+        List<Manufacturer> manufacturers = List.of(
+                new Manufacturer.Builder().setId(1).setName("Sony").setCountry("Japan").build(),
+                new Manufacturer.Builder().setId(2).setName("Nintendo").setCountry("Japan").build());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TableFormat.BINARY.write(out, manufacturers, manufacturers.size());
+        byte[] bytes = out.toByteArray();
+        // Header, dictionary of Sony, Japan, Nintendo, then length of first record
+        int lengthOffset = 3 * Integer.BYTES + Integer.BYTES + 3 * Integer.BYTES + "SonyJapanNintendo".length();
+        int length = ByteBuffer.wrap(bytes).getInt(lengthOffset);
+
+        // Record shorter than its fields doesn't read into next one
+        ByteBuffer shortened = ByteBuffer.wrap(bytes.clone()).putInt(lengthOffset, length - 4);
+        assertThatThrownBy(() -> TableFormat.BINARY.read(shortened, new ManufacturerFactory()))
+                .isInstanceOf(IOException.class);
+
+        ByteBuffer negative = ByteBuffer.wrap(bytes.clone()).putInt(lengthOffset, -1);
+        assertThatThrownBy(() -> TableFormat.BINARY.read(negative, new ManufacturerFactory()))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Negative length");
+    }
+
+    @Test
+    public void testParallelRead() throws IOException {
+
+        // Names with separators and brackets inside strings
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            products.add(new Product.Builder().setId(i).setName(i % 3 == 0 ? "Name \"},{\" [" + i % 10 + "]\\" : "Name")
+                    .setManufacturerId(i % 7).setPrice(i).setDate("2001-01-01").build());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TableFormat.JSON.write(out, products, products.size());
+        ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+
+        assertThat(JsonArraySplitter.split(buffer, 1)).hasSize(products.size());
+        List<JsonArraySplitter.Chunk> chunks = JsonArraySplitter.split(buffer, 1000);
+        assertThat(chunks.stream().mapToInt(JsonArraySplitter.Chunk::count).sum()).isEqualTo(products.size());
+
+        ProductFactory factory = new ProductFactory(new StringDictionary());
+        List<Product> read = TableFormat.JSON.readParallel(buffer, factory);
+        assertThat(read).extracting(Product::toJSON)
+                .containsExactlyElementsOf(products.stream().map(Product::toJSON).toList());
+        // Names interned concurrently are still one instance each
+        assertThat(read.get(3).getName()).isSameAs(read.get(33).getName());
+        assertThat(read.get(1).getName()).isSameAs(read.get(998).getName());
+        assertThat(factory.getDictionary().size()).isEqualTo(11);
+        StringDictionary dictionary = factory.getDictionary();
+        assertThat(dictionary.decode(dictionary.code("Name"))).isSameAs(read.get(998).getName());
+
+        assertThat(TableFormat.JSON.readParallel(ByteBuffer.wrap("[ ]".getBytes()), factory)).isEmpty();
+
+        // Table over threshold is parsed in parallel
+        TableOptions options = new TableOptions.Builder()
+                .setFormat(TableFormat.JSON)
+                .setParallelThreshold(0)
+                .build();
+        DatabaseHandler dbHandler = new DatabaseHandler(mfFile, pdFile, options);
+        Manufacturer manufacturer = new Manufacturer.Builder()
+                .setName("Sony")
+                .setCountry("Japan")
+                .build();
+        dbHandler.create(manufacturer);
+        for (int i = 0; i < 3; i++)
+            dbHandler.create(new Product.Builder().setName("Playstation " + i).setManufacturerId(manufacturer.getId())
+                    .setPrice(299.99).setDate("1994-12-03").build());
+        assertThat(new DatabaseHandler(mfFile, pdFile, options).readAllProducts()).extracting(Product::getName)
+                .containsExactly("Playstation 0", "Playstation 1", "Playstation 2");
+    }
+
+    private static List<Product> read(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            return TableFormat.JSON.read(channel, new ProductFactory());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.database.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LongHashMapTest {
+
+    @Test
+    public void testPutGetRemove() {
+
+        LongHashMap<String> map = new LongHashMap<>();
+
+        map.put(1L, "one");
+        map.put(2L, "two");
+        map.put(1L, "uno");
+
+        assertThat(map.size()).isEqualTo(2);
+        assertThat(map.get(1L)).isEqualTo("uno");
+        assertThat(map.remove(2L)).isEqualTo("two");
+        assertThat(map.containsKey(2L)).isFalse();
+        assertThat(map.get(3L)).isNull();
+    }
+
+    @Test
+    public void testInsertionOrder() {
+
+        LongHashMap<Long> map = new LongHashMap<>();
+
+        for (long i = 100; i > 0; i--)
+            map.put(i, i);
+        map.remove(50L);
+        map.put(50L, 50L);
+
+        assertThat(map.values().get(0)).isEqualTo(100L);
+        assertThat(map.values().get(map.size() - 1)).isEqualTo(50L);
+    }
+
+    @Test
+    public void testMatchesHashMap() {
+
+        LongHashMap<Long> map = new LongHashMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100_000; i++) {
+            // Small key range to force collisions and removals
+            long key = random.nextInt(2_000) * 1024L;
+            if (random.nextBoolean()) {
+                map.put(key, (long) i);
+                expected.put(key, (long) i);
+            } else {
+                assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(expected.size());
+        for (Map.Entry<Long, Long> entry : expected.entrySet())
+            assertThat(map.get(entry.getKey())).isEqualTo(entry.getValue());
+    }
+}
@@ -0,0 +1,101 @@
+package org.example.json;
+
+import org.example.entity.Product;
+import org.example.factory.ProductFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class JsonReaderTest {
+
+    private static JsonReader reader(String json) {
+        return new JsonReader(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testReadValues() {
+
+        JsonReader reader = reader(" { \"a\" : -12 , \"b\":1.5e2, \"c\":\"x\\\"y\\u00e9\\n\", \"d\":\"Кафе\" } ");
+
+        reader.beginObject();
+        assertThat(reader.nextName()).isEqualTo("a");
+        assertThat(reader.nextLong()).isEqualTo(-12L);
+        assertThat(reader.nextName()).isEqualTo("b");
+        assertThat(reader.nextDouble()).isEqualTo(150.0);
+        assertThat(reader.nextName()).isEqualTo("c");
+        assertThat(reader.nextString()).isEqualTo("x\"yé\n");
+        assertThat(reader.nextName()).isEqualTo("d");
+        assertThat(reader.nextString()).isEqualTo("Кафе");
+        assertThat(reader.hasNext()).isFalse();
+        reader.endObject();
+    }
+
+    @Test
+    public void testSkipUnknownFields() {
+
+        String json = "[{\"extra\":{\"x\":[1,2,{\"y\":null}]},\"id\":7,\"name\":\"Mug\","
+                + "\"manufacturerId\":3,\"date\":\"2000-12-23\",\"price\":12,\"flag\":true}]";
+
+        List<Product> products = new ProductFactory().createAll(reader(json));
+
+        assertThat(products).hasSize(1);
+        assertThat(products.get(0).getId()).isEqualTo(7L);
+        assertThat(products.get(0).getPrice()).isEqualTo(12.0);
+        assertThat(products.get(0).getDate()).isEqualTo("2000-12-23");
+    }
+
+    @Test
+    public void testMatchesDomParser() {
+
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 5_000; i++) {
+            if (i > 0)
+                json.append(',');
+            json.append(new Product.Builder()
+                    .setId(Long.MAX_VALUE - i)
+                    .setName("Product \"" + i + "\"")
+                    .setManufacturerId(i)
+                    .setDate("2000-12-23")
+                    .setPrice(i / 7.0)
+                    .build()
+                    .toJSON());
+        }
+        json.append(']');
+
+        // Channel source refills buffer many times
+        JsonReader reader = new JsonReader(Channels.newChannel(
+                new ByteArrayInputStream(json.toString().getBytes(StandardCharsets.UTF_8))));
+        List<Product> streamed = new ProductFactory().createAll(reader);
+        List<Product> parsed = new ProductFactory().createAll(json.toString());
+
+        assertThat(streamed).hasSameSizeAs(parsed);
+        for (int i = 0; i < parsed.size(); i++)
+            assertThat(streamed.get(i).toJSON()).isEqualTo(parsed.get(i).toJSON());
+    }
+
+    @Test
+    public void testMalformedInput() {
+
+        assertThatThrownBy(() -> new ProductFactory().createAll(reader("[{\"id\":}]")))
+                .isInstanceOf(JsonParseException.class);
+
+        // Long range is checked, not wrapped
+        JsonReader reader = reader("[9223372036854775807,-9223372036854775808]");
+        reader.beginArray();
+        assertThat(reader.nextLong()).isEqualTo(Long.MAX_VALUE);
+        assertThat(reader.nextLong()).isEqualTo(Long.MIN_VALUE);
+        assertThatThrownBy(() -> reader("9223372036854775808").nextLong())
+                .isInstanceOf(JsonParseException.class);
+        assertThatThrownBy(() -> reader("-9223372036854775809").nextLong())
+                .isInstanceOf(JsonParseException.class);
+        assertThatThrownBy(() -> reader("18446744073709551617").nextLong())
+                .isInstanceOf(JsonParseException.class);
+    }
+}
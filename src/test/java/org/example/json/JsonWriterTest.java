@@ -0,0 +1,44 @@
+package org.example.json;
+
+import org.example.entity.Manufacturer;
+import org.json.JSONArray;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JsonWriterTest {
+
+    @Test
+    public void testWriteEntities() throws IOException {
+
+        Manufacturer first = new Manufacturer.Builder()
+                .setId(1)
+                .setName("Quote \" and \\\\ slash")
+                .setCountry("Line\nbreak\u0001")
+                .build();
+        Manufacturer second = new Manufacturer.Builder()
+                .setId(Long.MAX_VALUE)
+                .setName("Кафе")
+                .setCountry("Ukraine")
+                .build();
+
+        StringWriter out = new StringWriter();
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginArray();
+        first.writeJSON(writer);
+        second.writeJSON(writer);
+        writer.endArray();
+
+        // Output must be readable by DOM parser
+        JSONArray array = new JSONArray(out.toString());
+
+        assertThat(array.length()).isEqualTo(2);
+        assertThat(array.getJSONObject(0).getString("name")).isEqualTo(first.getName());
+        assertThat(array.getJSONObject(0).getString("country")).isEqualTo(first.getCountry());
+        assertThat(array.getJSONObject(1).getLong("id")).isEqualTo(Long.MAX_VALUE);
+        assertThat(array.getJSONObject(1).getString("name")).isEqualTo("Кафе");
+    }
+}